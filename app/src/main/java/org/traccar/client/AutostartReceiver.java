@@ -28,6 +28,7 @@ public class AutostartReceiver extends WakefulBroadcastReceiver {
         SharedPreferences sharedPreferences = PreferenceManager.getDefaultSharedPreferences(context);
         if (sharedPreferences.getBoolean(MainActivity.KEY_STATUS, false)) {
             startWakefulService(context, new Intent(context, TrackingService.class));
+            ServiceSupervisor.start(context);
         }
     }
 
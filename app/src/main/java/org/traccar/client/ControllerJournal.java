@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class ControllerJournal {
+
+    private static final String NAME = "journal";
+    private static final long SAVE_DELAY = 10 * 1000;
+
+    private static final String KEY_DELIVERED = "delivered";
+    private static final String KEY_STALL_START = "stall_start";
+    private static final String KEY_LAST_FIX = "last_fix";
+    private static final String KEY_CELL_ID = "cell_id";
+    private static final String KEY_CELL_LAC = "cell_lac";
+    private static final String KEY_CELL_LATITUDE = "cell_latitude";
+    private static final String KEY_CELL_LONGITUDE = "cell_longitude";
+
+    private final SharedPreferences preferences;
+    private final Handler handler;
+
+    // positions accepted by the server but not yet deleted from the database
+    private final Set<Long> delivered = new LinkedHashSet<>();
+    private String savedDelivered;
+    private boolean isSavePending;
+    private long lastFixTime;
+    private long savedLastFixTime;
+    private long stallStart;
+
+    private final Runnable saveTask = new Runnable() {
+        @Override
+        public void run() {
+            save(false);
+        }
+    };
+
+    public ControllerJournal(Context context, Looper looper) {
+        preferences = context.getSharedPreferences(NAME, Context.MODE_PRIVATE);
+        handler = new Handler(looper);
+        String value = preferences.getString(KEY_DELIVERED, "");
+        savedDelivered = value;
+        if (!value.isEmpty()) {
+            for (String id : value.split(",")) {
+                delivered.add(Long.parseLong(id));
+            }
+        }
+        stallStart = preferences.getLong(KEY_STALL_START, -1);
+        lastFixTime = preferences.getLong(KEY_LAST_FIX, 0);
+        savedLastFixTime = lastFixTime;
+    }
+
+    public Set<Long> getDelivered() {
+        return new LinkedHashSet<>(delivered);
+    }
+
+    // written before the row is deleted, a restart in between would upload it again
+    public void onDelivered(long id) {
+        if (delivered.add(id)) {
+            handler.removeCallbacks(saveTask);
+            save(true);
+        }
+    }
+
+    public void onDeleted(long id) {
+        if (delivered.remove(id)) {
+            scheduleSave();
+        }
+    }
+
+    public void onDeleted(Collection<Long> ids) {
+        if (delivered.removeAll(ids)) {
+            scheduleSave();
+        }
+    }
+
+    // row ids are never reused, a removal lost with the process only repeats a delete of a missing row
+    private void scheduleSave() {
+        if (!isSavePending) {
+            isSavePending = true;
+            handler.postDelayed(saveTask, SAVE_DELAY);
+        }
+    }
+
+    public long getLastFixTime() {
+        return lastFixTime;
+    }
+
+    // not worth a write of its own, saved with the next batch
+    public void setLastFixTime(long lastFixTime) {
+        if (lastFixTime > this.lastFixTime) {
+            this.lastFixTime = lastFixTime;
+            scheduleSave();
+        }
+    }
+
+    public void flush() {
+        handler.removeCallbacks(saveTask);
+        save(true);
+    }
+
+    @TargetApi(Build.VERSION_CODES.GINGERBREAD)
+    private void save(boolean durable) {
+        isSavePending = false;
+        String value = TextUtils.join(",", delivered);
+        if (!value.equals(savedDelivered) || lastFixTime != savedLastFixTime) {
+            savedDelivered = value;
+            savedLastFixTime = lastFixTime;
+            SharedPreferences.Editor editor = preferences.edit()
+                    .putString(KEY_DELIVERED, value)
+                    .putLong(KEY_LAST_FIX, lastFixTime);
+            if (!durable && Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
+                editor.apply();
+            } else {
+                editor.commit();
+            }
+        }
+    }
+
+    public long getStallStart() {
+        return stallStart;
+    }
+
+    public void setStallStart(long stallStart) {
+        if (this.stallStart != stallStart) {
+            this.stallStart = stallStart;
+            preferences.edit().putLong(KEY_STALL_START, stallStart).commit();
+        }
+    }
+
+    public String getCellId() {
+        return preferences.getString(KEY_CELL_ID, null);
+    }
+
+    public String getCellLac() {
+        return preferences.getString(KEY_CELL_LAC, null);
+    }
+
+    public Double getCellLatitude() {
+        String value = preferences.getString(KEY_CELL_LATITUDE, null);
+        return value != null ? Double.valueOf(value) : null;
+    }
+
+    public Double getCellLongitude() {
+        String value = preferences.getString(KEY_CELL_LONGITUDE, null);
+        return value != null ? Double.valueOf(value) : null;
+    }
+
+    public void setCell(String id, String lac, double latitude, double longitude) {
+        preferences.edit()
+                .putString(KEY_CELL_ID, id)
+                .putString(KEY_CELL_LAC, lac)
+                .putString(KEY_CELL_LATITUDE, String.valueOf(latitude))
+                .putString(KEY_CELL_LONGITUDE, String.valueOf(longitude))
+                .commit();
+    }
+
+}
@@ -21,52 +21,76 @@ import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-import android.os.AsyncTask;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
-public class DatabaseHelper extends SQLiteOpenHelper {
+public class DatabaseHelper extends SQLiteOpenHelper implements PositionStore {
 
     public static final int DATABASE_VERSION = 1;
     public static final String DATABASE_NAME = "traccar.db";
 
-    public interface DatabaseHandler<T> {
-        void onComplete(boolean success, T result);
+    public interface DatabaseHandler<T> extends PositionStore.Handler<T> {
     }
 
-    private static abstract class DatabaseAsyncTask<T> extends AsyncTask<Void, Void, T> {
+    private static final Executor executor = Executors.newSingleThreadExecutor();
 
-        private DatabaseHandler<T> handler;
+    private static final Metrics.Histogram insertTime = Metrics.histogram("db.insert", Metrics.TIME_BUCKETS);
+    private static final Metrics.Histogram selectTime = Metrics.histogram("db.select", Metrics.TIME_BUCKETS);
+    private static final Metrics.Histogram deleteTime = Metrics.histogram("db.delete", Metrics.TIME_BUCKETS);
+    private static final Metrics.Counter insertedRows = Metrics.counter("db.rows.inserted");
+    private static final Metrics.Counter deletedRows = Metrics.counter("db.rows.deleted");
+
+    private static abstract class DatabaseAsyncTask<T> implements Runnable {
+
+        private android.os.Handler callbackHandler = new android.os.Handler();
+        private PositionStore.Handler<T> handler;
         private RuntimeException error;
+        private T result;
 
-        public DatabaseAsyncTask(DatabaseHandler<T> handler) {
+        public DatabaseAsyncTask(PositionStore.Handler<T> handler) {
             this.handler = handler;
         }
 
         @Override
-        protected T doInBackground(Void... params) {
+        public void run() {
             try {
-                return executeMethod();
+                result = executeMethod();
             } catch (RuntimeException error) {
                 this.error = error;
-                return null;
             }
+            callbackHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    handler.onComplete(error == null, result);
+                }
+            });
         }
 
         protected abstract T executeMethod();
 
-        @Override
-        protected void onPostExecute(T result) {
-            handler.onComplete(error == null, result);
+        public void execute() {
+            executor.execute(this);
         }
     }
 
     private SQLiteDatabase db;
 
     public DatabaseHelper(Context context) {
-
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
-        db = getWritableDatabase();
+    }
+
+    // opened on first use, which normally happens on the executor thread
+    private synchronized SQLiteDatabase getDatabase() {
+        if (db == null) {
+            db = getWritableDatabase();
+        }
+        return db;
     }
 
     @Override
@@ -91,6 +115,50 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     public void insertPosition(Position position) {
+        long startTime = System.currentTimeMillis();
+        position.setId(getDatabase().insertOrThrow("position", null, createValues(position)));
+        insertTime.record(System.currentTimeMillis() - startTime);
+        insertedRows.inc();
+    }
+
+    public void insertPositionAsync(final Position position, DatabaseHandler<Void> handler) {
+        new DatabaseAsyncTask<Void>(handler) {
+            @Override
+            protected Void executeMethod() {
+                insertPosition(position);
+                return null;
+            }
+        }.execute();
+    }
+
+    public void insertPositions(List<Position> positions) {
+        long startTime = System.currentTimeMillis();
+        SQLiteDatabase db = getDatabase();
+        db.beginTransaction();
+        try {
+            for (Position position : positions) {
+                position.setId(db.insertOrThrow("position", null, createValues(position)));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        insertTime.record(System.currentTimeMillis() - startTime);
+        insertedRows.add(positions.size());
+    }
+
+    @Override
+    public void insertPositionsAsync(final List<Position> positions, PositionStore.Handler<Void> handler) {
+        new DatabaseAsyncTask<Void>(handler) {
+            @Override
+            protected Void executeMethod() {
+                insertPositions(positions);
+                return null;
+            }
+        }.execute();
+    }
+
+    private static ContentValues createValues(Position position) {
         ContentValues values = new ContentValues();
         values.put("deviceId", position.getDeviceId());
         values.put("time", position.getTime().getTime());
@@ -101,66 +169,137 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put("course", position.getCourse());
         values.put("battery", position.getBattery());
         values.put("gsm", position.getGsm());
+        return values;
+    }
 
-        db.insertOrThrow("position", null, values);
+    public Position selectPosition() {
+        return selectPosition(Collections.<Long>emptySet());
     }
 
-    public void insertPositionAsync(final Position position, DatabaseHandler<Void> handler) {
-        new DatabaseAsyncTask<Void>(handler) {
-            @Override
-            protected Void executeMethod() {
-                insertPosition(position);
-                return null;
-            }
-        }.execute();
+    private static void readPosition(Cursor cursor, Position position) {
+        position.setId(cursor.getLong(cursor.getColumnIndex("id")));
+        position.setDeviceId(cursor.getString(cursor.getColumnIndex("deviceId")));
+        position.setTime(new Date(cursor.getLong(cursor.getColumnIndex("time"))));
+        position.setLatitude(cursor.getDouble(cursor.getColumnIndex("latitude")));
+        position.setLongitude(cursor.getDouble(cursor.getColumnIndex("longitude")));
+        position.setAltitude(cursor.getDouble(cursor.getColumnIndex("altitude")));
+        position.setSpeed(cursor.getDouble(cursor.getColumnIndex("speed")));
+        position.setCourse(cursor.getDouble(cursor.getColumnIndex("course")));
+        position.setBattery(cursor.getDouble(cursor.getColumnIndex("battery")));
+        position.setGsm(cursor.getInt(cursor.getColumnIndex("gsm")));
     }
 
-    public Position selectPosition() {
+    public Position selectPosition(Collection<Long> exclude) {
         Position position = new Position();
 
-        Cursor cursor = db.rawQuery("SELECT * FROM position ORDER BY id LIMIT 1", null);
+        StringBuilder query = new StringBuilder("SELECT * FROM position");
+        if (!exclude.isEmpty()) {
+            query.append(" WHERE id NOT IN (");
+            boolean first = true;
+            for (long id : exclude) {
+                if (!first) {
+                    query.append(',');
+                }
+                query.append(id);
+                first = false;
+            }
+            query.append(')');
+        }
+        query.append(" ORDER BY id LIMIT 1");
+
+        long startTime = System.currentTimeMillis();
+        Cursor cursor = getDatabase().rawQuery(query.toString(), null);
         try {
             if (cursor.getCount() > 0) {
 
                 cursor.moveToFirst();
-
-                position.setId(cursor.getLong(cursor.getColumnIndex("id")));
-                position.setDeviceId(cursor.getString(cursor.getColumnIndex("deviceId")));
-                position.setTime(new Date(cursor.getLong(cursor.getColumnIndex("time"))));
-                position.setLatitude(cursor.getDouble(cursor.getColumnIndex("latitude")));
-                position.setLongitude(cursor.getDouble(cursor.getColumnIndex("longitude")));
-                position.setAltitude(cursor.getDouble(cursor.getColumnIndex("altitude")));
-                position.setSpeed(cursor.getDouble(cursor.getColumnIndex("speed")));
-                position.setCourse(cursor.getDouble(cursor.getColumnIndex("course")));
-                position.setBattery(cursor.getDouble(cursor.getColumnIndex("battery")));
-                position.setGsm(cursor.getInt(cursor.getColumnIndex("gsm")));
+                readPosition(cursor, position);
 
             } else {
                 return null;
             }
         } finally {
             cursor.close();
+            selectTime.record(System.currentTimeMillis() - startTime);
         }
 
         return position;
     }
 
     public void selectPositionAsync(DatabaseHandler<Position> handler) {
+        selectPositionAsync(Collections.<Long>emptySet(), handler);
+    }
+
+    @Override
+    public void selectPositionAsync(Collection<Long> exclude, PositionStore.Handler<Position> handler) {
+        final Collection<Long> excludeCopy = new ArrayList<>(exclude);
         new DatabaseAsyncTask<Position>(handler) {
             @Override
             protected Position executeMethod() {
-                return selectPosition();
+                return selectPosition(excludeCopy);
+            }
+        }.execute();
+    }
+
+    public List<Position> selectPositions(long fromId, int limit) {
+        List<Position> positions = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
+        Cursor cursor = getDatabase().rawQuery("SELECT * FROM position WHERE id >= ? ORDER BY id LIMIT ?",
+                new String[] { String.valueOf(fromId), String.valueOf(limit) });
+        try {
+            while (cursor.moveToNext()) {
+                Position position = new Position();
+                readPosition(cursor, position);
+                positions.add(position);
+            }
+        } finally {
+            cursor.close();
+            selectTime.record(System.currentTimeMillis() - startTime);
+        }
+        return positions;
+    }
+
+    @Override
+    public void selectPositionsAsync(final long fromId, final int limit, PositionStore.Handler<List<Position>> handler) {
+        new DatabaseAsyncTask<List<Position>>(handler) {
+            @Override
+            protected List<Position> executeMethod() {
+                return selectPositions(fromId, limit);
+            }
+        }.execute();
+    }
+
+    public long countPositions() {
+        Cursor cursor = getDatabase().rawQuery("SELECT COUNT(*) FROM position", null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void countPositionsAsync(PositionStore.Handler<Long> handler) {
+        new DatabaseAsyncTask<Long>(handler) {
+            @Override
+            protected Long executeMethod() {
+                return countPositions();
             }
         }.execute();
     }
 
     public void deletePosition(long id) {
-        if (db.delete("position", "id = ?", new String[] { String.valueOf(id) }) != 1) {
+        long startTime = System.currentTimeMillis();
+        if (getDatabase().delete("position", "id = ?", new String[] { String.valueOf(id) }) != 1) {
             throw new SQLException();
         }
+        deleteTime.record(System.currentTimeMillis() - startTime);
+        deletedRows.inc();
     }
 
-    public void deletePositionAsync(final long id, DatabaseHandler<Void> handler) {
+    @Override
+    public void deletePositionAsync(final long id, PositionStore.Handler<Void> handler) {
         new DatabaseAsyncTask<Void>(handler) {
             @Override
             protected Void executeMethod() {
@@ -170,4 +309,33 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }.execute();
     }
 
+    public int deletePositions(Collection<Long> ids) {
+        long startTime = System.currentTimeMillis();
+        SQLiteDatabase db = getDatabase();
+        int count = 0;
+        db.beginTransaction();
+        try {
+            for (long id : ids) {
+                count += db.delete("position", "id = ?", new String[] { String.valueOf(id) });
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        deleteTime.record(System.currentTimeMillis() - startTime);
+        deletedRows.add(count);
+        return count;
+    }
+
+    @Override
+    public void deletePositionsAsync(Collection<Long> ids, PositionStore.Handler<Integer> handler) {
+        final Collection<Long> idsCopy = new ArrayList<>(ids);
+        new DatabaseAsyncTask<Integer>(handler) {
+            @Override
+            protected Integer executeMethod() {
+                return deletePositions(idsCopy);
+            }
+        }.execute();
+    }
+
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class HandlerClock implements Clock {
+
+    private static final String ACTION_WAKEUP = "org.traccar.client.WAKEUP";
+
+    private static int instances;
+
+    private final Context context;
+    private final Handler handler;
+    private final AlarmManager alarmManager;
+    private final String action;
+    private final PendingIntent wakeupIntent;
+
+    // due times in elapsed realtime, one alarm is set for the earliest
+    private final Map<Runnable, Long> wakeups = new HashMap<>();
+    private boolean isRegistered;
+
+    private final BroadcastReceiver wakeupReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            runWakeups();
+        }
+    };
+
+    public HandlerClock(Context context, Looper looper) {
+        this.context = context;
+        handler = new Handler(looper);
+        alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        synchronized (HandlerClock.class) {
+            action = ACTION_WAKEUP + "." + instances++;
+        }
+        wakeupIntent = PendingIntent.getBroadcast(
+                context, 0, new Intent(action).setPackage(context.getPackageName()), 0);
+    }
+
+    @Override
+    public long currentTime() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long elapsedTime() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void post(Runnable task) {
+        handler.post(task);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delay) {
+        handler.postDelayed(task, delay);
+    }
+
+    // handler delays stop while the device sleeps, so these go through an alarm that wakes it
+    @Override
+    public void postWakeup(Runnable task, long delay) {
+        wakeups.put(task, SystemClock.elapsedRealtime() + delay);
+        scheduleWakeup();
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        handler.removeCallbacks(task);
+        if (wakeups.remove(task) != null) {
+            scheduleWakeup();
+        }
+    }
+
+    // tasks run inside the receiver, so anything they lock is held before the alarm releases the device
+    private void runWakeups() {
+        long now = SystemClock.elapsedRealtime();
+        List<Runnable> due = new ArrayList<>();
+        for (Map.Entry<Runnable, Long> entry : wakeups.entrySet()) {
+            if (entry.getValue() <= now) {
+                due.add(entry.getKey());
+            }
+        }
+        for (Runnable task : due) {
+            wakeups.remove(task);
+        }
+        for (Runnable task : due) {
+            task.run();
+        }
+        scheduleWakeup();
+    }
+
+    private void scheduleWakeup() {
+        if (wakeups.isEmpty()) {
+            alarmManager.cancel(wakeupIntent);
+            if (isRegistered) {
+                context.unregisterReceiver(wakeupReceiver);
+                isRegistered = false;
+            }
+            return;
+        }
+        if (!isRegistered) {
+            context.registerReceiver(wakeupReceiver, new IntentFilter(action), null, handler);
+            isRegistered = true;
+        }
+        long next = Long.MAX_VALUE;
+        for (long time : wakeups.values()) {
+            next = Math.min(next, time);
+        }
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME_WAKEUP, next, wakeupIntent);
+    }
+
+}
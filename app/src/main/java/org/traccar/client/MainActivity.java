@@ -16,9 +16,7 @@
 package org.traccar.client;
 
 import android.Manifest;
-import android.app.AlarmManager;
 import android.app.AlertDialog;
-import android.app.PendingIntent;
 import android.content.ComponentName;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -55,16 +53,36 @@ public class MainActivity extends PreferenceActivity implements OnSharedPreferen
     public static final String KEY_ALT_INTERVAL = "alt_interval";
     public static final String KEY_DISTANCE = "distance";
     public static final String KEY_ANGLE = "angle";
+    public static final String KEY_ACCURACY = "accuracy";
+    public static final String KEY_MAX_SPEED = "max_speed";
+    public static final String KEY_SMOOTHING = "smoothing";
     public static final String KEY_PROVIDER = "provider";
+    public static final String KEY_ADAPTIVE = "adaptive";
+    public static final String KEY_MIN_INTERVAL = "min_interval";
+    public static final String KEY_MAX_INTERVAL = "max_interval";
+    public static final String KEY_BUFFER = "buffer";
+    public static final String KEY_BUFFER_AGE = "buffer_age";
+    public static final String KEY_SYNC = "sync";
+    public static final String KEY_SYNC_INTERVAL = "sync_interval";
+    public static final String KEY_SYNC_BACKLOG = "sync_backlog";
+    public static final String KEY_COMPACTION = "compaction";
+    public static final String KEY_COMPACTION_BACKLOG = "compaction_backlog";
+    public static final String KEY_COMPACTION_TOLERANCE = "compaction_tolerance";
+    public static final String KEY_TIMEOUT_FLOOR = "timeout_floor";
+    public static final String KEY_TIMEOUT_CEILING = "timeout_ceiling";
+    public static final String KEY_TRACE_RATE = "trace_rate";
+    public static final String KEY_EVENT_LOG = "event_log";
+    public static final String KEY_REPLAY_FILE = "replay_file";
+    public static final String KEY_REPLAY_SPEED = "replay_speed";
+    public static final String KEY_STATIONARY = "stationary";
+    public static final String KEY_STATIONARY_TIMEOUT = "stationary_timeout";
+    public static final String KEY_HEARTBEAT = "heartbeat";
     public static final String KEY_STATUS = "status";
 
     private static final int PERMISSIONS_REQUEST_LOCATION = 2;
 
     private SharedPreferences sharedPreferences;
 
-    private AlarmManager alarmManager;
-    private PendingIntent alarmIntent;
-
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -144,9 +162,42 @@ public class MainActivity extends PreferenceActivity implements OnSharedPreferen
         };
         findPreference(KEY_DISTANCE).setOnPreferenceChangeListener(numberValidationListener);
         findPreference(KEY_ANGLE).setOnPreferenceChangeListener(numberValidationListener);
+        findPreference(KEY_ACCURACY).setOnPreferenceChangeListener(numberValidationListener);
+        findPreference(KEY_MAX_SPEED).setOnPreferenceChangeListener(numberValidationListener);
+        findPreference(KEY_TRACE_RATE).setOnPreferenceChangeListener(numberValidationListener);
+        findPreference(KEY_REPLAY_SPEED).setOnPreferenceChangeListener(numberValidationListener);
 
-        alarmManager = (AlarmManager) getSystemService(ALARM_SERVICE);
-        alarmIntent = PendingIntent.getBroadcast(this, 0, new Intent(this, AutostartReceiver.class), 0);
+        Preference.OnPreferenceChangeListener intervalValidationListener = new Preference.OnPreferenceChangeListener() {
+            @Override
+            public boolean onPreferenceChange(Preference preference, Object newValue) {
+                if (newValue != null) {
+                    try {
+                        int value = Integer.parseInt((String) newValue);
+                        return value > 0;
+                    } catch (NumberFormatException e) {
+                        Log.w(TAG, e);
+                    }
+                }
+                return false;
+            }
+        };
+        findPreference(KEY_MIN_INTERVAL).setOnPreferenceChangeListener(intervalValidationListener);
+        findPreference(KEY_MAX_INTERVAL).setOnPreferenceChangeListener(intervalValidationListener);
+        findPreference(KEY_STATIONARY_TIMEOUT).setOnPreferenceChangeListener(intervalValidationListener);
+        findPreference(KEY_HEARTBEAT).setOnPreferenceChangeListener(intervalValidationListener);
+        findPreference(KEY_BUFFER_AGE).setOnPreferenceChangeListener(intervalValidationListener);
+        findPreference(KEY_SYNC_INTERVAL).setOnPreferenceChangeListener(intervalValidationListener);
+        findPreference(KEY_SYNC_BACKLOG).setOnPreferenceChangeListener(intervalValidationListener);
+        findPreference(KEY_COMPACTION_BACKLOG).setOnPreferenceChangeListener(intervalValidationListener);
+        findPreference(KEY_COMPACTION_TOLERANCE).setOnPreferenceChangeListener(intervalValidationListener);
+        findPreference(KEY_TIMEOUT_FLOOR).setOnPreferenceChangeListener(intervalValidationListener);
+        findPreference(KEY_TIMEOUT_CEILING).setOnPreferenceChangeListener(intervalValidationListener);
+
+        // track replay is a debugging aid, release builds do not offer the provider
+        if (!BuildConfig.DEBUG) {
+            getPreferenceScreen().removePreference(findPreference(KEY_REPLAY_FILE));
+            getPreferenceScreen().removePreference(findPreference(KEY_REPLAY_SPEED));
+        }
 
         if (sharedPreferences.getBoolean(KEY_STATUS, false)) {
             startTrackingService(true, false);
@@ -201,17 +252,6 @@ public class MainActivity extends PreferenceActivity implements OnSharedPreferen
         sharedPreferences.unregisterOnSharedPreferenceChangeListener(this);
     }
 
-    private void setPreferencesEnabled(boolean enabled) {
-        findPreference(KEY_DEVICE).setEnabled(enabled);
-        findPreference(KEY_URL).setEnabled(enabled);
-        findPreference(KEY_API).setEnabled(enabled);
-        findPreference(KEY_INTERVAL).setEnabled(enabled);
-        findPreference(KEY_ALT_INTERVAL).setEnabled(enabled);
-        findPreference(KEY_DISTANCE).setEnabled(enabled);
-        findPreference(KEY_ANGLE).setEnabled(enabled);
-        findPreference(KEY_PROVIDER).setEnabled(enabled);
-    }
-
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
         if (key.equals(KEY_STATUS)) {
@@ -236,6 +276,9 @@ public class MainActivity extends PreferenceActivity implements OnSharedPreferen
         if (item.getItemId() == R.id.status) {
             startActivity(new Intent(this, StatusActivity.class));
             return true;
+        } else if (item.getItemId() == R.id.metrics) {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
         } else if (item.getItemId() == R.id.shortcuts) {
             addShortcuts(ShortcutActivity.EXTRA_ACTION_START, R.string.shortcut_start);
             addShortcuts(ShortcutActivity.EXTRA_ACTION_STOP, R.string.shortcut_stop);
@@ -280,10 +323,8 @@ public class MainActivity extends PreferenceActivity implements OnSharedPreferen
         }
 
         if (permission) {
-            setPreferencesEnabled(false);
             startService(new Intent(this, TrackingService.class));
-            alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME_WAKEUP,
-                    15000, 15000, alarmIntent);
+            ServiceSupervisor.start(this);
         } else {
             sharedPreferences.edit().putBoolean(KEY_STATUS, false).commit();
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
@@ -297,9 +338,8 @@ public class MainActivity extends PreferenceActivity implements OnSharedPreferen
     }
 
     private void stopTrackingService() {
-        alarmManager.cancel(alarmIntent);
+        ServiceSupervisor.stop(this);
         stopService(new Intent(this, TrackingService.class));
-        setPreferencesEnabled(true);
     }
 
     @Override
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.annotation.TargetApi;
+import android.app.ListActivity;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.ArrayAdapter;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class MetricsActivity extends ListActivity {
+
+    private static final String TAG = MetricsActivity.class.getSimpleName();
+
+    private static final int REFRESH_INTERVAL = 1000;
+
+    private final List<String> lines = new ArrayList<>();
+    private final Handler handler = new Handler();
+    private ArrayAdapter<String> adapter;
+
+    private final Runnable refreshTask = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+            handler.postDelayed(this, REFRESH_INTERVAL);
+        }
+    };
+
+    private static List<String> format() {
+        List<String> lines = Metrics.format();
+        long uptime = Metrics.getUptime();
+        if (uptime > 0) {
+            double wakeLockTime = Metrics.counter("wakelock.time").get() / 1000.0;
+            lines.add(1, String.format(Locale.US, "wakelock %.1f s/h", wakeLockTime * 3600000 / uptime));
+        }
+        return lines;
+    }
+
+    private void refresh() {
+        lines.clear();
+        lines.addAll(format());
+        adapter.notifyDataSetChanged();
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.status);
+        adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, android.R.id.text1, lines);
+        setListAdapter(adapter);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        handler.post(refreshTask);
+    }
+
+    @Override
+    protected void onPause() {
+        handler.removeCallbacks(refreshTask);
+        super.onPause();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.metrics, menu);
+        return super.onCreateOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.dump) {
+            dump();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @TargetApi(Build.VERSION_CODES.FROYO)
+    private File getDumpDirectory() {
+        File directory = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.FROYO) {
+            directory = getExternalFilesDir(null);
+        }
+        return directory != null ? directory : getFilesDir();
+    }
+
+    private void dump() {
+        File file = new File(getDumpDirectory(), "metrics-" + System.currentTimeMillis() + ".txt");
+        try {
+            Writer writer = new FileWriter(file);
+            try {
+                for (String line : format()) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            Toast.makeText(this, getString(R.string.metrics_dumped, file.getPath()), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Log.w(TAG, e);
+            Toast.makeText(this, R.string.metrics_dump_failed, Toast.LENGTH_LONG).show();
+        }
+    }
+
+}
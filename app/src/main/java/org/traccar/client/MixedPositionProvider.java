@@ -22,6 +22,7 @@ import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.telephony.TelephonyManager;
 import android.telephony.gsm.GsmCellLocation;
 import android.util.Log;
@@ -30,29 +31,36 @@ import android.util.Log;
 public class MixedPositionProvider extends PositionProvider implements LocationListener, GpsStatus.Listener {
 
     private static final int FIX_TIMEOUT = 30 * 1000;
+    private static final long STATUS_INTERVAL = 10 * 1000;
+    private static final double UNKNOWN_ACCURACY = 1000.0; // meters
 
     private LocationListener backupListener;
     private long lastFixTime;
     private Handler handler;
 
+    private final ProviderScore gpsScore = new ProviderScore(LocationManager.GPS_PROVIDER);
+    private final ProviderScore networkScore = new ProviderScore(LocationManager.NETWORK_PROVIDER);
+    private final ProviderScore gsmScore = new ProviderScore("gsm");
+    private long lastStatusTime;
 
-    public MixedPositionProvider(Context context, PositionListener listener) {
-        super(context, listener);
-        handler = new Handler();
+
+    public MixedPositionProvider(Context context, Looper looper, TrackingConfig config, PositionListener listener) {
+        super(context, looper, config, listener);
+        handler = new Handler(looper);
 
     }
 
-    public void startUpdates() {
+    protected void requestLocationUpdates() {
         lastFixTime = System.currentTimeMillis();
         locationManager.addGpsStatusListener(this);
         try {
-            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, requestInterval, 0, this);
+            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, requestInterval, 0, this, looper);
         } catch (IllegalArgumentException e) {
             Log.w(TAG, e);
         }
     }
 
-    public void stopUpdates() {
+    protected void removeLocationUpdates() {
         locationManager.removeUpdates(this);
         locationManager.removeGpsStatusListener(this);
         stopBackupProvider();
@@ -87,13 +95,17 @@ public class MixedPositionProvider extends PositionProvider implements LocationL
                     @Override
                     public void onLocationChanged(Location location) {
                         Log.i(TAG, "backup provider location");
-                        if (System.currentTimeMillis() - lastFixTime < requestInterval) {
+                        boolean forced = System.currentTimeMillis() - lastFixTime < requestInterval;
+                        lastFixTime = System.currentTimeMillis();
+                        if (!checkLocation(networkScore, location)) {
+                            return;
+                        }
+                        if (forced) {
                             Log.i(TAG, "location forced");
                             updateLocation(location,true);
                         } else {
                             updateLocation(location,false);
                         }
-                        lastFixTime = System.currentTimeMillis();
                     }
 
                     @Override
@@ -113,7 +125,7 @@ public class MixedPositionProvider extends PositionProvider implements LocationL
                 };
 
                 locationManager.requestLocationUpdates(
-                        LocationManager.NETWORK_PROVIDER, requestInterval, 0, backupListener);
+                        LocationManager.NETWORK_PROVIDER, requestInterval, 0, backupListener, looper);
             }
         }
     }
@@ -130,9 +142,35 @@ public class MixedPositionProvider extends PositionProvider implements LocationL
     @Override
     public void onLocationChanged(Location location) {
         Log.i(TAG, "provider location");
-        stopBackupProvider();
         lastFixTime = System.currentTimeMillis();
-        updateLocation(location, false);
+        // gps is delivering again, the backup radio goes off and its last fixes no longer compete
+        stopBackupProvider();
+        if (checkLocation(gpsScore, location)) {
+            updateLocation(location, false);
+        }
+    }
+
+    private boolean checkLocation(ProviderScore score, Location location) {
+        long now = System.currentTimeMillis();
+        score.onFix(now, location.getTime(), location.hasAccuracy() ? location.getAccuracy() : UNKNOWN_ACCURACY);
+
+        // implausible jumps are left to the speed stage, mixed mode always has one
+        boolean accept = true;
+        ProviderScore other = score == gpsScore ? networkScore : gpsScore;
+        boolean running = other == gpsScore || backupListener != null;
+        if (running && other.isAvailable(now, requestInterval + FIX_TIMEOUT) && other.getScore() < score.getScore()) {
+            Log.i(TAG, score.getName() + " location superseded by " + other.getName());
+            score.onSuperseded();
+            accept = false;
+        }
+
+        if (now - lastStatusTime >= STATUS_INTERVAL) {
+            lastStatusTime = now;
+            StatusActivity.setStatus("providers", gpsScore.format(now, requestInterval) + "\n"
+                    + networkScore.format(now, requestInterval) + "\n"
+                    + gsmScore.format(now, requestInterval));
+        }
+        return accept;
     }
 
     @Override
@@ -170,6 +208,7 @@ public class MixedPositionProvider extends PositionProvider implements LocationL
                 targetLocation.setLatitude(Double.parseDouble(String.valueOf(cellLocation.getCid())));
                 targetLocation.setLongitude(Double.parseDouble(String.valueOf(cellLocation.getLac())));
                 targetLocation.setTime(System.currentTimeMillis());
+                gsmScore.onFix(targetLocation.getTime(), targetLocation.getTime(), 0);
 
                 Bundle gsm = new Bundle();
                 gsm.putSerializable("gsm", 1);
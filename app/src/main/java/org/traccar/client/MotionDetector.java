@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.hardware.TriggerEvent;
+import android.hardware.TriggerEventListener;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+
+public class MotionDetector {
+
+    private static final String TAG = MotionDetector.class.getSimpleName();
+
+    private static final float ACCELERATION_THRESHOLD = 1.5f; // meters per second squared
+    private static final int MOTION_SAMPLES = 3;
+
+    public interface MotionListener {
+        void onMotion();
+    }
+
+    private final SensorManager sensorManager;
+    private final MotionListener listener;
+    private final Handler handler;
+
+    private Sensor sensor;
+    private TriggerEventListener triggerListener;
+    private SensorEventListener accelerometerListener;
+    private int motionSamples;
+
+    public MotionDetector(Context context, MotionListener listener, Handler handler) {
+        this.listener = listener;
+        this.handler = handler;
+        sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+    }
+
+    public boolean start() {
+        stop();
+        if (sensorManager == null) {
+            return false;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 && startSignificantMotion()) {
+            Log.i(TAG, "significant motion sensor armed");
+            return true;
+        }
+        if (startAccelerometer()) {
+            Log.i(TAG, "accelerometer armed");
+            return true;
+        }
+        return false;
+    }
+
+    public void stop() {
+        if (triggerListener != null) {
+            cancelSignificantMotion();
+        }
+        if (accelerometerListener != null) {
+            sensorManager.unregisterListener(accelerometerListener);
+            accelerometerListener = null;
+        }
+        sensor = null;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private boolean startSignificantMotion() {
+        sensor = sensorManager.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION);
+        if (sensor == null) {
+            return false;
+        }
+        triggerListener = new TriggerEventListener() {
+            @Override
+            public void onTrigger(TriggerEvent event) {
+                // trigger sensors disarm themselves after firing
+                triggerListener = null;
+                sensor = null;
+                listener.onMotion();
+            }
+        };
+        if (!sensorManager.requestTriggerSensor(triggerListener, sensor)) {
+            triggerListener = null;
+            sensor = null;
+            return false;
+        }
+        return true;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private void cancelSignificantMotion() {
+        sensorManager.cancelTriggerSensor(triggerListener, sensor);
+        triggerListener = null;
+    }
+
+    private boolean startAccelerometer() {
+        sensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        if (sensor == null) {
+            return false;
+        }
+        motionSamples = 0;
+        accelerometerListener = new SensorEventListener() {
+            @Override
+            public void onSensorChanged(SensorEvent event) {
+                float x = event.values[0];
+                float y = event.values[1];
+                float z = event.values[2];
+                double acceleration = Math.sqrt(x * x + y * y + z * z);
+                if (Math.abs(acceleration - SensorManager.GRAVITY_EARTH) > ACCELERATION_THRESHOLD) {
+                    motionSamples += 1;
+                } else {
+                    motionSamples = 0;
+                }
+                if (motionSamples >= MOTION_SAMPLES) {
+                    stop();
+                    listener.onMotion();
+                }
+            }
+
+            @Override
+            public void onAccuracyChanged(Sensor sensor, int accuracy) {
+            }
+        };
+        if (!sensorManager.registerListener(accelerometerListener, sensor, SensorManager.SENSOR_DELAY_NORMAL, handler)) {
+            accelerometerListener = null;
+            sensor = null;
+            return false;
+        }
+        return true;
+    }
+
+}
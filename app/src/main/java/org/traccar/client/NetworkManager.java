@@ -15,53 +15,217 @@
  */
 package org.traccar.client;
 
+import android.annotation.TargetApi;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import java.util.LinkedList;
+import java.util.Locale;
+
 public class NetworkManager extends BroadcastReceiver {
 
     private static final String TAG = NetworkManager.class.getSimpleName();
 
+    private static final int PROBE_INTERVAL = 60 * 1000;
+    private static final int HISTORY_SIZE = 10;
+    private static final int MIN_HISTORY = 3;
+    private static final double MIN_SUCCESS_RATE = 0.5;
+
+    public enum State {
+        OFFLINE, DEGRADED, ONLINE, UNMETERED;
+
+        public boolean isUsable() {
+            return this == ONLINE || this == UNMETERED;
+        }
+    }
+
     private Context context;
     private NetworkHandler handler;
+    private Handler scheduler;
     private ConnectivityManager connectivityManager;
 
-    public NetworkManager(Context context, NetworkHandler handler) {
+    private String url;
+    private State state = State.OFFLINE;
+    private boolean isProbing;
+    private boolean isReachable = true;
+    private final LinkedList<Boolean> history = new LinkedList<>();
+
+    public NetworkManager(Context context, Looper looper, NetworkHandler handler) {
         this.context = context;
         this.handler = handler;
+        scheduler = new Handler(looper);
         connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        state = getLinkState();
     }
 
     public interface NetworkHandler {
-        void onNetworkUpdate(boolean isOnline);
+        void onNetworkUpdate(State state);
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public State getState() {
+        return state;
     }
 
     public boolean isOnline() {
+        return state.isUsable();
+    }
+
+    public boolean isUnmetered() {
+        return state == State.UNMETERED;
+    }
+
+    private boolean isConnected() {
+        NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
+        return activeNetwork != null && activeNetwork.isConnected();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private boolean isMetered() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return connectivityManager.isActiveNetworkMetered();
+        } else {
+            NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
+            return activeNetwork == null || activeNetwork.getType() != ConnectivityManager.TYPE_WIFI;
+        }
+    }
+
+    private String getNetworkType() {
         NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
-        return activeNetwork != null && activeNetwork.isConnectedOrConnecting();
+        if (activeNetwork == null) {
+            return "none";
+        } else if (activeNetwork.getSubtypeName() != null && !activeNetwork.getSubtypeName().isEmpty()) {
+            return activeNetwork.getTypeName() + "/" + activeNetwork.getSubtypeName();
+        } else {
+            return activeNetwork.getTypeName();
+        }
+    }
+
+    private double getSuccessRate() {
+        if (history.isEmpty()) {
+            return 1;
+        }
+        int success = 0;
+        for (boolean result : history) {
+            if (result) {
+                success += 1;
+            }
+        }
+        return success / (double) history.size();
+    }
+
+    private State getLinkState() {
+        if (!isConnected()) {
+            return State.OFFLINE;
+        } else if (!isReachable || history.size() >= MIN_HISTORY && getSuccessRate() < MIN_SUCCESS_RATE) {
+            return State.DEGRADED;
+        } else if (isMetered()) {
+            return State.ONLINE;
+        } else {
+            return State.UNMETERED;
+        }
+    }
+
+    private void updateState() {
+        State newState = getLinkState();
+        RequestManager.getTimeoutPolicy().setNetworkType(getNetworkType());
+        RequestLocationManager.getTimeoutPolicy().setNetworkType(getNetworkType());
+        StatusActivity.setStatus("network", String.format(Locale.US,
+                "%s, %s%s, success %.0f%% of %d, probe %s",
+                newState, getNetworkType(), isMetered() ? " metered" : "",
+                getSuccessRate() * 100, history.size(), isReachable ? "ok" : "failed"));
+        if (newState == State.DEGRADED) {
+            scheduleProbe();
+        } else {
+            scheduler.removeCallbacks(probeTask);
+        }
+        if (newState != state) {
+            Log.i(TAG, "network " + state + " -> " + newState);
+            state = newState;
+            if (handler != null) {
+                handler.onNetworkUpdate(newState);
+            }
+        }
+    }
+
+    public void onSendResult(boolean success) {
+        history.add(success);
+        while (history.size() > HISTORY_SIZE) {
+            history.removeFirst();
+        }
+        updateState();
+    }
+
+    private final Runnable probeTask = new Runnable() {
+        @Override
+        public void run() {
+            probe();
+        }
+    };
+
+    private void scheduleProbe() {
+        scheduler.removeCallbacks(probeTask);
+        scheduler.postDelayed(probeTask, PROBE_INTERVAL);
+    }
+
+    private void probe() {
+        if (isProbing || !isConnected()) {
+            return;
+        }
+        if (url == null) {
+            onProbeResult(true);
+            return;
+        }
+        isProbing = true;
+        RequestManager.probeAsync(url, new RequestManager.RequestHandler() {
+            @Override
+            public void onComplete(boolean success) {
+                isProbing = false;
+                onProbeResult(success);
+            }
+        });
+    }
+
+    private void onProbeResult(boolean success) {
+        Log.i(TAG, "probe " + (success ? "ok" : "failed"));
+        isReachable = success;
+        if (success) {
+            history.clear();
+        }
+        updateState();
     }
 
     public void start() {
         IntentFilter filter = new IntentFilter();
         filter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
-        context.registerReceiver(this, filter);
+        context.registerReceiver(this, filter, null, scheduler);
+        probe();
     }
 
     public void stop() {
+        scheduler.removeCallbacks(probeTask);
         context.unregisterReceiver(this);
     }
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        if (intent.getAction().equals(ConnectivityManager.CONNECTIVITY_ACTION) && handler != null) {
-            boolean isOnline = isOnline();
-            Log.i(TAG, "network " + (isOnline ? "on" : "off"));
-            handler.onNetworkUpdate(isOnline);
+        if (intent.getAction().equals(ConnectivityManager.CONNECTIVITY_ACTION)) {
+            // a new link is not blamed for failures of the old one, the probe decides
+            history.clear();
+            isReachable = true;
+            updateState();
+            probe();
         }
     }
 
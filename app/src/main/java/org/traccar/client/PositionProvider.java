@@ -16,28 +16,51 @@
 package org.traccar.client;
 
 import android.annotation.TargetApi;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.SharedPreferences;
 import android.location.Location;
 import android.location.LocationManager;
 import android.os.BatteryManager;
 import android.os.Build;
-import android.preference.PreferenceManager;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
-public abstract class PositionProvider {
+import java.util.Date;
+
+public abstract class PositionProvider implements LocationSource {
 
     protected static final String TAG = PositionProvider.class.getSimpleName();
 
-    public interface PositionListener {
-        void onPositionUpdate(Position position);
+    private static final double STATIONARY_SPEED = 1.0; // meters per second
+    private static final double FAST_SPEED = 25.0; // meters per second
+    private static final double TURN_ANGLE = 30.0; // degrees
+    private static final double SPEED_SMOOTHING = 0.5;
+    private static final double STATIONARY_RADIUS = 50.0; // meters
+    private static final double MIN_BEARING_SPEED = 1.0; // meters per second
+    private static final long WARM_START_AGE = 5 * 60 * 1000;
+    private static final long QUIET_MARGIN = 5 * 60 * 1000;
+    private static final String ACTION_HEARTBEAT = "org.traccar.client.HEARTBEAT";
+
+    private static final Metrics.Counter locationsReceived = Metrics.counter("location.received");
+    private static final Metrics.Counter locationsAccepted = Metrics.counter("location.accepted");
+    private static final Metrics.Counter locationsRejected = Metrics.counter("location.rejected");
+    private static final Metrics.Histogram locationAccuracy = Metrics.histogram("location.accuracy", Metrics.DISTANCE_BUCKETS);
+    private static final Metrics.Histogram locationAge = Metrics.histogram("location.age", Metrics.TIME_BUCKETS);
+
+    public interface PositionListener extends LocationSource.Listener {
     }
 
     private final PositionListener listener;
 
     public final Context context;
+    protected final Looper looper;
     protected final LocationManager locationManager;
 
     protected String deviceId;
@@ -48,48 +71,410 @@ public abstract class PositionProvider {
     protected long alt_interval;
     protected double distance;
     protected double angle;
+    protected double accuracy;
+    protected double maxSpeed;
+    protected boolean smoothing;
 
+    protected boolean adaptive;
+    protected long baseInterval;
+    protected long minInterval;
+    protected long maxInterval;
+
+    protected boolean stationaryMode;
+    protected long stationaryTimeout;
+    protected long heartbeatInterval;
+
+    private TrackingConfig config;
     private Location lastLocation;
+    private LocationFilterChain filterChain;
+    private final KalmanFilter kalmanFilter = new KalmanFilter();
+    private Location lastRawLocation;
+    private long lastFixTime;
+    private long lastUpdate;
+    private double recentSpeed = -1;
+
+    private final Handler handler;
+    private final AlarmManager alarmManager;
+    private final PendingIntent heartbeatIntent;
+    private final MotionDetector motionDetector;
+    private boolean stationary;
+    private boolean priority;
+    private Location anchorLocation;
+    private long anchorTime;
 
-    public PositionProvider(Context context, PositionListener listener) {
+    // location updates are off while stationary, so the heartbeat needs an alarm that wakes the device
+    private final BroadcastReceiver heartbeatReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            lastUpdate = SystemClock.uptimeMillis();
+            if (lastLocation != null) {
+                Log.i(TAG, "location heartbeat");
+                StatusActivity.addMessage(R.string.status_heartbeat);
+                Location location = new Location(lastLocation);
+                location.setTime(System.currentTimeMillis());
+                listener.onPositionUpdate(createPosition(deviceId, location, getBatteryLevel(context)));
+            }
+            scheduleHeartbeat();
+        }
+    };
+
+    public PositionProvider(Context context, Looper looper, TrackingConfig config, PositionListener listener) {
         this.context = context;
+        this.looper = looper;
         this.listener = listener;
+        handler = new Handler(looper);
+
+        alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        heartbeatIntent = PendingIntent.getBroadcast(
+                context, 0, new Intent(ACTION_HEARTBEAT).setPackage(context.getPackageName()), 0);
 
-        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
         locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
 
-        deviceId = preferences.getString(MainActivity.KEY_DEVICE, null);
-        interval = Long.parseLong(preferences.getString(MainActivity.KEY_INTERVAL, null)) * 1000;
-        alt_interval = Long.parseLong(preferences.getString(MainActivity.KEY_ALT_INTERVAL, null)) * 1000;
-        distance = Integer.parseInt(preferences.getString(MainActivity.KEY_DISTANCE, null));
-        angle = Integer.parseInt(preferences.getString(MainActivity.KEY_ANGLE, null));
+        configure(config);
+
+        motionDetector = new MotionDetector(context, new MotionDetector.MotionListener() {
+            @Override
+            public void onMotion() {
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        stopStationary();
+                    }
+                });
+            }
+        }, handler);
+    }
+
+    private void configure(TrackingConfig config) {
+        this.config = config;
+
+        type = config.getProvider();
+        deviceId = config.getDeviceId();
+        interval = config.getInterval();
+        alt_interval = config.getAltInterval();
+        distance = config.getDistance();
+        angle = config.getAngle();
+        accuracy = config.getAccuracy();
+        maxSpeed = config.getMaxSpeed();
+        smoothing = config.getSmoothing();
 
         if (distance > 0 || angle > 0) {
             requestInterval = alt_interval;
         } else {
             requestInterval = interval;
         }
+        baseInterval = requestInterval;
+
+        adaptive = config.getAdaptive();
+        minInterval = config.getMinInterval();
+        maxInterval = config.getMaxInterval();
+
+        stationaryMode = config.getStationary();
+        stationaryTimeout = config.getStationaryTimeout();
+        heartbeatInterval = config.getHeartbeatInterval();
+
+        LocationFilterChain previousChain = filterChain;
+        filterChain = new LocationFilterChain();
+        filterChain.add(new LocationFilter.Duplicate());
+        if (accuracy > 0) {
+            filterChain.add(new LocationFilter.Accuracy(accuracy));
+        }
+        if (maxSpeed > 0) {
+            filterChain.add(new LocationFilter.Speed(maxSpeed));
+        }
+        filterChain.add(new LocationFilter.MinTime(interval));
+        if (distance > 0) {
+            filterChain.add(new LocationFilter.MinDistance(distance));
+        }
+        if (angle > 0) {
+            filterChain.add(new LocationFilter.Heading(angle));
+        }
+        if (previousChain != null && previousChain.getLastPosition() != null) {
+            filterChain.force(previousChain.getLastPosition());
+        }
+    }
+
+    public void applyConfig(TrackingConfig config) {
+        TrackingConfig previous = this.config;
+        long previousInterval = requestInterval;
+        if (!config.isFilterChanged(previous)) {
+            LocationFilterChain chain = filterChain;
+            configure(config);
+            filterChain = chain;
+        } else {
+            configure(config);
+        }
+        if (!smoothing) {
+            kalmanFilter.reset();
+        }
+        if (stationary && !stationaryMode) {
+            stopStationary();
+        } else if ((config.isRequestChanged(previous) || requestInterval != previousInterval) && !stationary) {
+            // also when only the adaptive interval went back to the base one
+            Log.i(TAG, "location request changed");
+            restartUpdates();
+        }
+    }
+
+    protected abstract void requestLocationUpdates();
+
+    protected abstract void removeLocationUpdates();
+
+    @Override
+    public void startUpdates() {
+        kalmanFilter.reset();
+        stationary = false;
+        priority = true;
+        anchorLocation = null;
+        lastUpdate = SystemClock.uptimeMillis();
+        requestLocationUpdates();
+        if (isWarmStartEnabled()) {
+            warmStart();
+        }
+    }
+
+    // fixes up to this time were already handed on, by this provider or an earlier one
+    public void setLastFixTime(long lastFixTime) {
+        this.lastFixTime = lastFixTime;
+    }
+
+    protected boolean isWarmStartEnabled() {
+        return true;
+    }
+
+    private void warmStart() {
+        Location best = null;
+        for (String provider : new String[] {LocationManager.GPS_PROVIDER, LocationManager.NETWORK_PROVIDER}) {
+            try {
+                Location location = locationManager.getLastKnownLocation(provider);
+                if (location != null && (best == null || location.getTime() > best.getTime())) {
+                    best = location;
+                }
+            } catch (SecurityException | IllegalArgumentException e) {
+                Log.w(TAG, e);
+            }
+        }
+        if (best != null && best.getTime() > lastFixTime
+                && System.currentTimeMillis() - best.getTime() < WARM_START_AGE) {
+            // a cached fix is not fresh, the priority flag is left for the first live one
+            Log.i(TAG, "location warm start");
+            priority = false;
+            updateLocation(best, false);
+            priority = true;
+        }
+    }
 
-        type = preferences.getString(MainActivity.KEY_PROVIDER, "gps");
+    // locations come every request interval, or every heartbeat while stationary, uptime leaves out deep sleep
+    public boolean isDelivering() {
+        long gap = stationary ? heartbeatInterval : requestInterval;
+        return SystemClock.uptimeMillis() - lastUpdate <= 2 * gap + QUIET_MARGIN;
     }
 
-    public abstract void startUpdates();
+    public LocationFilterChain getFilterChain() {
+        return filterChain;
+    }
 
-    public abstract void stopUpdates();
+    @Override
+    public void stopUpdates() {
+        Log.i(TAG, "filter " + filterChain);
+        if (stationary) {
+            stationary = false;
+            motionDetector.stop();
+            stopHeartbeat();
+        }
+        removeLocationUpdates();
+    }
 
     protected void updateLocation(Location location, Boolean forced) {
-        if ((location != null && (lastLocation == null
-                || location.getTime() - lastLocation.getTime() >= interval
-                || distance > 0 && DistanceCalculator.distance(location.getLatitude(), location.getLongitude(), lastLocation.getLatitude(), location.getLongitude()) >= distance
-                || angle > 0 && Math.abs(location.getBearing() - lastLocation.getBearing()) >= angle)) || (location != null && forced)) {
+        if (location == null) {
+            Log.i(TAG, "location nil");
+            return;
+        }
+        lastUpdate = SystemClock.uptimeMillis();
+
+        locationsReceived.inc();
+        locationAge.record(Math.max(System.currentTimeMillis() - location.getTime(), 0));
+        if (location.hasAccuracy()) {
+            locationAccuracy.record((long) location.getAccuracy());
+        }
+
+        if (smoothing && !isCellLocation(location)) {
+            smoothLocation(location);
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        PositionTrace trace = new PositionTrace();
+        trace.mark(PositionTrace.FIX, Math.max(now - Math.max(System.currentTimeMillis() - location.getTime(), 0), 1));
+        trace.mark(PositionTrace.RECEIVE, now);
+
+        Position position = createPosition(deviceId, location, 0);
+        position.setTrace(trace);
+        if (forced) {
+            filterChain.force(position);
+        }
+        if (forced || filterChain.accept(position)) {
             Log.i(TAG, "location new");
+            locationsAccepted.inc();
+            trace.mark(PositionTrace.ACCEPT, SystemClock.elapsedRealtime());
             lastLocation = location;
-            listener.onPositionUpdate(new Position(deviceId, location, getBatteryLevel(context)));
+            lastFixTime = Math.max(lastFixTime, location.getTime());
+            position.setBattery(getBatteryLevel(context));
+            position.setPriority(priority);
+            priority = false;
+            listener.onPositionUpdate(position);
         } else {
-            Log.i(TAG, location != null ? "location ignored: " + location.getTime() + " " + lastLocation.getTime() + " " + (location.getTime() - lastLocation.getTime()) : "location nil");
+            Log.i(TAG, "location ignored: " + location.getTime());
+            locationsRejected.inc();
+        }
+
+        if (!isCellLocation(location)) {
+            if (adaptive) {
+                adaptInterval(location);
+            }
+            if (stationaryMode) {
+                checkStationary(location);
+            }
+        }
+    }
+
+    private void smoothLocation(Location location) {
+        kalmanFilter.process(location.getTime(), location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : 0);
+        location.setLatitude(kalmanFilter.getLatitude());
+        location.setLongitude(kalmanFilter.getLongitude());
+        location.setAccuracy((float) kalmanFilter.getAccuracy());
+        double speed = kalmanFilter.getSpeed();
+        location.setSpeed((float) speed);
+        if (speed >= MIN_BEARING_SPEED) {
+            location.setBearing((float) kalmanFilter.getBearing());
+        }
+    }
+
+    private static boolean isCellLocation(Location location) {
+        Bundle extras = location.getExtras();
+        return extras != null && extras.getInt("gsm", 0) == 1;
+    }
+
+    private void checkStationary(Location location) {
+        long now = System.currentTimeMillis();
+        if (anchorLocation == null || DistanceCalculator.distance(
+                anchorLocation.getLatitude(), anchorLocation.getLongitude(),
+                location.getLatitude(), location.getLongitude()) > Math.max(STATIONARY_RADIUS, location.getAccuracy())) {
+            anchorLocation = location;
+            anchorTime = now;
+        } else if (!stationary && now - anchorTime >= stationaryTimeout) {
+            startStationary();
+        }
+    }
+
+    private void startStationary() {
+        try {
+            removeLocationUpdates();
+        } catch (SecurityException e) {
+            Log.w(TAG, e);
+        }
+        if (!motionDetector.start()) {
+            Log.w(TAG, "no motion sensor, stationary mode unavailable");
+            stationaryMode = false;
+            restartUpdates();
+            return;
         }
+        stationary = true;
+        Log.i(TAG, "stationary start");
+        StatusActivity.addMessage(R.string.status_stationary_start);
+        lastUpdate = SystemClock.uptimeMillis();
+        context.registerReceiver(heartbeatReceiver, new IntentFilter(ACTION_HEARTBEAT), null, handler);
+        scheduleHeartbeat();
+    }
+
+    private void scheduleHeartbeat() {
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME_WAKEUP,
+                SystemClock.elapsedRealtime() + heartbeatInterval, heartbeatIntent);
+    }
 
+    private void stopHeartbeat() {
+        alarmManager.cancel(heartbeatIntent);
+        context.unregisterReceiver(heartbeatReceiver);
+    }
 
+    private void stopStationary() {
+        if (!stationary) {
+            return;
+        }
+        stationary = false;
+        Log.i(TAG, "stationary stop");
+        StatusActivity.addMessage(R.string.status_stationary_stop);
+        stopHeartbeat();
+        motionDetector.stop();
+        anchorLocation = null;
+        priority = true;
+        restartUpdates();
+    }
+
+    private void adaptInterval(Location location) {
+        double speed;
+        if (location.hasSpeed()) {
+            speed = location.getSpeed();
+        } else if (lastRawLocation != null && location.getTime() > lastRawLocation.getTime()) {
+            speed = DistanceCalculator.distance(
+                    lastRawLocation.getLatitude(), lastRawLocation.getLongitude(),
+                    location.getLatitude(), location.getLongitude())
+                    * 1000 / (location.getTime() - lastRawLocation.getTime());
+        } else {
+            speed = 0;
+        }
+        if (recentSpeed < 0) {
+            recentSpeed = speed;
+        } else {
+            recentSpeed = SPEED_SMOOTHING * speed + (1 - SPEED_SMOOTHING) * recentSpeed;
+        }
+
+        boolean turning = lastRawLocation != null && location.hasBearing() && lastRawLocation.hasBearing()
+                && LocationFilter.headingChange(lastRawLocation.getBearing(), location.getBearing()) >= TURN_ANGLE;
+        lastRawLocation = location;
+
+        long targetInterval;
+        if (recentSpeed < STATIONARY_SPEED) {
+            targetInterval = maxInterval;
+        } else if (recentSpeed > FAST_SPEED || turning) {
+            targetInterval = minInterval;
+        } else {
+            targetInterval = Math.min(Math.max(baseInterval, minInterval), maxInterval);
+        }
+
+        if (targetInterval != requestInterval) {
+            Log.i(TAG, "interval " + requestInterval / 1000 + "s -> " + targetInterval / 1000 + "s");
+            requestInterval = targetInterval;
+            if (!stationary) {
+                restartUpdates();
+            }
+        }
+    }
+
+    protected void restartUpdates() {
+        lastUpdate = SystemClock.uptimeMillis();
+        try {
+            removeLocationUpdates();
+            requestLocationUpdates();
+        } catch (SecurityException e) {
+            Log.w(TAG, e);
+        }
+    }
+
+    public static Position createPosition(String deviceId, Location location, double battery) {
+        Position position = new Position();
+        position.setDeviceId(deviceId);
+        position.setTime(new Date(location.getTime()));
+        position.setLatitude(location.getLatitude());
+        position.setLongitude(location.getLongitude());
+        position.setAltitude(location.getAltitude());
+        position.setSpeed(location.getSpeed() * 1.943844); // speed in knots
+        position.setCourse(location.getBearing());
+        position.setAccuracy(location.getAccuracy());
+        position.setBattery(battery);
+        Bundle extras = location.getExtras();
+        position.setGsm(extras != null ? extras.getInt("gsm", 0) : 0);
+        return position;
     }
 
     @TargetApi(Build.VERSION_CODES.ECLAIR)
@@ -104,4 +489,14 @@ public abstract class PositionProvider {
         }
     }
 
+    @TargetApi(Build.VERSION_CODES.ECLAIR)
+    public static boolean isCharging(Context context) {
+        if (android.os.Build.VERSION.SDK_INT > Build.VERSION_CODES.ECLAIR) {
+            Intent batteryIntent = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+            return batteryIntent != null && batteryIntent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        } else {
+            return false;
+        }
+    }
+
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.content.Context;
+import android.location.Location;
+import android.location.LocationManager;
+import android.os.Build;
+import android.os.Environment;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+// debug builds only, feeds a recorded track through the same filters as live locations
+public class ReplayPositionProvider extends PositionProvider implements ReplayLocationSource.Listener {
+
+    private static final double KNOTS_PER_MPS = 1.943844;
+
+    private final ReplayLocationSource replay;
+
+    public ReplayPositionProvider(Context context, Looper looper, TrackingConfig config, PositionListener listener) {
+        super(context, looper, config, listener);
+        final File file = getTrackFile(context, config.getReplayFile());
+        replay = new ReplayLocationSource(new HandlerClock(context, looper), new ReplayLocationSource.TrackOpener() {
+            @Override
+            public TrackReader open() throws IOException {
+                return new TrackReader(
+                        new InputStreamReader(new FileInputStream(file), "UTF-8"), TrackReader.getFormat(file.getName()));
+            }
+        }, config.getReplaySpeed(), false, this);
+        Log.i(TAG, "replay " + file + " at " + config.getReplaySpeed() + "x");
+    }
+
+    private static File getTrackFile(Context context, String name) {
+        File file = new File(name);
+        if (file.isAbsolute()) {
+            return file;
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.FROYO) {
+            return new File(context.getExternalFilesDir(null), name);
+        } else {
+            return new File(Environment.getExternalStorageDirectory(), name);
+        }
+    }
+
+    // restarts for stationary mode or interval changes pause the replay instead of rewinding it
+    @Override
+    protected void requestLocationUpdates() {
+        replay.startUpdates();
+    }
+
+    @Override
+    protected void removeLocationUpdates() {
+        replay.stopUpdates();
+    }
+
+    @Override
+    public void stopUpdates() {
+        super.stopUpdates();
+        replay.close();
+    }
+
+    @Override
+    protected boolean isWarmStartEnabled() {
+        return false;
+    }
+
+    @Override
+    public void onPositionUpdate(Position position) {
+        Location location = new Location(LocationManager.GPS_PROVIDER);
+        location.setTime(position.getTime().getTime());
+        location.setLatitude(position.getLatitude());
+        location.setLongitude(position.getLongitude());
+        location.setAltitude(position.getAltitude());
+        location.setSpeed((float) (position.getSpeed() / KNOTS_PER_MPS));
+        location.setBearing((float) position.getCourse());
+        if (position.getAccuracy() > 0) {
+            location.setAccuracy((float) position.getAccuracy());
+        }
+        updateLocation(location, false);
+    }
+
+    @Override
+    public void onReplayEnd(IOException error) {
+        if (error != null) {
+            Log.w(TAG, error);
+        }
+        StatusActivity.addMessage(R.string.status_replay_end);
+    }
+
+}
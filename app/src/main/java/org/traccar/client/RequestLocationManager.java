@@ -15,50 +15,76 @@
  */
 package org.traccar.client;
 
-import android.os.AsyncTask;
+import android.os.Handler;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class RequestLocationManager {
 
-    private static final int TIMEOUT = 15 * 1000;
-
     public interface RequestHandler {
         void onComplete(String Location);
     }
 
-    private static class RequestAsyncTask extends AsyncTask<String, Void, String> {
+    private static final Executor executor = Executors.newSingleThreadExecutor();
+
+    // geolocation service latency is unrelated to the tracking server, so it is measured separately
+    private static final TimeoutPolicy timeoutPolicy = new TimeoutPolicy();
+
+    public static TimeoutPolicy getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
+
+    private static class RequestAsyncTask implements Runnable {
 
+        private Handler callbackHandler = new Handler();
         private RequestHandler handler;
+        private String request;
+        private String result;
 
         public RequestAsyncTask(RequestHandler handler) {
             this.handler = handler;
         }
 
         @Override
-        protected String doInBackground(String... request) {
-            return sendRequest(request[0]);
+        public void run() {
+            result = sendRequest(request);
+            callbackHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    handler.onComplete(result);
+                }
+            });
         }
 
-        @Override
-        protected void onPostExecute(String result) {
-            handler.onComplete(result);
+        public void execute(String request) {
+            this.request = request;
+            executor.execute(this);
         }
     }
 
     public static String sendRequest(String request) {
         InputStream inputStream = null;
+        int connectTimeout = timeoutPolicy.getConnectTimeout();
+        int readTimeout = timeoutPolicy.getReadTimeout();
+        long startTime = System.currentTimeMillis();
+        boolean connected = false;
         try {
             URL url = new URL(request);
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setReadTimeout(TIMEOUT);
-            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(readTimeout);
+            connection.setConnectTimeout(connectTimeout);
             connection.connect();
+            long connectTime = System.currentTimeMillis();
+            timeoutPolicy.onConnect(connectTime - startTime);
+            connected = true;
 
             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
             String inputLine;
@@ -68,8 +94,17 @@ public class RequestLocationManager {
                 response.append(inputLine);
             }
             in.close();
+            timeoutPolicy.onRead(System.currentTimeMillis() - connectTime);
             return response.toString();
+        } catch (SocketTimeoutException error) {
+            if (connected) {
+                timeoutPolicy.onReadTimeout(readTimeout);
+            } else {
+                timeoutPolicy.onConnectTimeout(connectTimeout);
+            }
+            return "nan";
         } catch (IOException error) {
+            timeoutPolicy.onFailure();
             return "nan";
         } finally {
             try {
@@ -15,53 +15,98 @@
  */
 package org.traccar.client;
 
-import android.os.AsyncTask;
+import android.os.Handler;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
 import java.net.URL;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class RequestManager {
 
-    private static final int TIMEOUT = 15 * 1000;
+    private static final int PROBE_TIMEOUT = 5 * 1000;
+
+    private static final TimeoutPolicy timeoutPolicy = new TimeoutPolicy();
+
+    private static final Metrics.Histogram sendTime = Metrics.histogram("http.send", Metrics.TIME_BUCKETS);
+    private static final Metrics.Counter sendSuccess = Metrics.counter("http.success");
+    private static final Metrics.Counter sendFailure = Metrics.counter("http.failure");
+    private static final Metrics.Counter sendTimeout = Metrics.counter("http.timeout");
+
+    public static TimeoutPolicy getTimeoutPolicy() {
+        return timeoutPolicy;
+    }
 
     public interface RequestHandler {
         void onComplete(boolean success);
     }
 
-    private static class RequestAsyncTask extends AsyncTask<String, Void, Boolean> {
+    private static final Executor executor = Executors.newSingleThreadExecutor();
+
+    private static class RequestAsyncTask implements Runnable {
 
+        private Handler callbackHandler = new Handler();
         private RequestHandler handler;
+        private String request;
+        private boolean probe;
+        private boolean result;
 
         public RequestAsyncTask(RequestHandler handler) {
             this.handler = handler;
         }
 
         @Override
-        protected Boolean doInBackground(String... request) {
-            return sendRequest(request[0]);
+        public void run() {
+            result = probe ? probe(request) : sendRequest(request);
+            callbackHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    handler.onComplete(result);
+                }
+            });
         }
 
-        @Override
-        protected void onPostExecute(Boolean result) {
-            handler.onComplete(result);
+        public void execute(String request) {
+            this.request = request;
+            executor.execute(this);
         }
     }
 
     public static boolean sendRequest(String request) {
         InputStream inputStream = null;
+        int connectTimeout = timeoutPolicy.getConnectTimeout();
+        int readTimeout = timeoutPolicy.getReadTimeout();
+        long startTime = System.currentTimeMillis();
+        boolean connected = false;
         try {
             URL url = new URL(request);
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setReadTimeout(TIMEOUT);
-            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(readTimeout);
+            connection.setConnectTimeout(connectTimeout);
             connection.connect();
+            long connectTime = System.currentTimeMillis();
+            timeoutPolicy.onConnect(connectTime - startTime);
+            connected = true;
             inputStream = connection.getInputStream();
             while (inputStream.read() != -1);
+            timeoutPolicy.onRead(System.currentTimeMillis() - connectTime);
+            sendTime.record(System.currentTimeMillis() - startTime);
+            sendSuccess.inc();
             return true;
+        } catch (SocketTimeoutException error) {
+            if (connected) {
+                timeoutPolicy.onReadTimeout(readTimeout);
+            } else {
+                timeoutPolicy.onConnectTimeout(connectTimeout);
+            }
+            sendTimeout.inc();
+            return false;
         } catch (IOException error) {
-
+            timeoutPolicy.onFailure();
+            sendFailure.inc();
             return false;
         } finally {
             try {
@@ -79,4 +124,30 @@ public class RequestManager {
         task.execute(request);
     }
 
+    // any response counts, unless it was redirected to another host, which usually means a captive portal
+    public static boolean probe(String request) {
+        HttpURLConnection connection = null;
+        try {
+            URL url = new URL(request);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setReadTimeout(PROBE_TIMEOUT);
+            connection.setConnectTimeout(PROBE_TIMEOUT);
+            connection.setRequestMethod("HEAD");
+            connection.getResponseCode();
+            return url.getHost().equalsIgnoreCase(connection.getURL().getHost());
+        } catch (IOException error) {
+            return false;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    public static void probeAsync(String request, RequestHandler handler) {
+        RequestAsyncTask task = new RequestAsyncTask(handler);
+        task.probe = true;
+        task.execute(request);
+    }
+
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.support.v4.content.WakefulBroadcastReceiver;
+import android.util.Log;
+
+public class ServiceSupervisor extends WakefulBroadcastReceiver {
+
+    private static final String TAG = ServiceSupervisor.class.getSimpleName();
+
+    public static final long HEARTBEAT_PERIOD = 60 * 1000;
+
+    // heartbeat age is measured in uptime, so deep sleep does not make a healthy pipeline look stale
+    private static final long STALE_TIMEOUT = 3 * HEARTBEAT_PERIOD;
+    private static final long MIN_INTERVAL = 60 * 1000;
+    private static final long MAX_INTERVAL = AlarmManager.INTERVAL_HOUR;
+
+    private static final String KEY_INTERVAL = "supervisor_interval";
+    private static final String KEY_WAKEUPS = "supervisor_wakeups";
+    private static final String KEY_RESTARTS = "supervisor_restarts";
+
+    private static volatile long heartbeat;
+
+    // stamped only while the controller makes progress
+    public static void heartbeat() {
+        heartbeat = SystemClock.uptimeMillis();
+    }
+
+    public static void clearHeartbeat() {
+        heartbeat = 0;
+    }
+
+    private static PendingIntent getIntent(Context context) {
+        return PendingIntent.getBroadcast(context, 0, new Intent(context, ServiceSupervisor.class), 0);
+    }
+
+    private static void schedule(Context context, long interval) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME_WAKEUP,
+                SystemClock.elapsedRealtime() + interval, getIntent(context));
+    }
+
+    public static void start(Context context) {
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        preferences.edit().putLong(KEY_INTERVAL, MIN_INTERVAL).commit();
+        schedule(context, MIN_INTERVAL);
+    }
+
+    public static void stop(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(getIntent(context));
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        if (!preferences.getBoolean(MainActivity.KEY_STATUS, false)) {
+            return;
+        }
+
+        long wakeups = preferences.getLong(KEY_WAKEUPS, 0) + 1;
+        long restarts = preferences.getLong(KEY_RESTARTS, 0);
+        long interval = preferences.getLong(KEY_INTERVAL, MIN_INTERVAL);
+
+        long last = heartbeat;
+        if (last == 0 || SystemClock.uptimeMillis() - last > STALE_TIMEOUT) {
+            Log.i(TAG, "heartbeat stale, restarting service");
+            restarts += 1;
+            interval = MIN_INTERVAL;
+            if (last != 0) {
+                context.stopService(new Intent(context, TrackingService.class));
+            }
+            startWakefulService(context, new Intent(context, TrackingService.class));
+        } else {
+            interval = Math.min(interval * 2, MAX_INTERVAL);
+        }
+
+        preferences.edit()
+                .putLong(KEY_WAKEUPS, wakeups)
+                .putLong(KEY_RESTARTS, restarts)
+                .putLong(KEY_INTERVAL, interval)
+                .commit();
+        StatusActivity.setStatus("supervisor",
+                "wakeups " + wakeups + ", restarts " + restarts + ", next " + interval / 1000 + " s");
+
+        schedule(context, interval);
+    }
+
+}
@@ -59,7 +59,7 @@ public class ShortcutActivity extends Activity {
 
         if (location != null) {
 
-            Position position = new Position(
+            Position position = PositionProvider.createPosition(
                     preferences.getString(MainActivity.KEY_DEVICE, null),
                     location, PositionProvider.getBatteryLevel(this));
 
@@ -20,27 +20,27 @@ import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
+import android.os.Looper;
 import android.util.Log;
 
 @SuppressWarnings("MissingPermission")
 public class SimplePositionProvider extends PositionProvider implements LocationListener {
 
-    public SimplePositionProvider(Context context, PositionListener listener) {
-        super(context, listener);
-        if (!type.equals(LocationManager.NETWORK_PROVIDER)) {
-            type = LocationManager.GPS_PROVIDER;
-        }
+    public SimplePositionProvider(Context context, Looper looper, TrackingConfig config, PositionListener listener) {
+        super(context, looper, config, listener);
     }
 
-    public void startUpdates() {
+    protected void requestLocationUpdates() {
+        String provider = type.equals(LocationManager.NETWORK_PROVIDER)
+                ? LocationManager.NETWORK_PROVIDER : LocationManager.GPS_PROVIDER;
         try {
-            locationManager.requestLocationUpdates(type, requestInterval, 0, this);
+            locationManager.requestLocationUpdates(provider, requestInterval, 0, this, looper);
         } catch (IllegalArgumentException e) {
             Log.w(TAG, e);
         }
     }
 
-    public void stopUpdates() {
+    protected void removeLocationUpdates() {
         locationManager.removeUpdates(this);
     }
 
@@ -15,61 +15,173 @@
  */
 package org.traccar.client;
 
+import java.io.File;
 import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import android.app.ListActivity;
+import android.content.Context;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.widget.ArrayAdapter;
+import android.widget.TextView;
 
 public class StatusActivity extends ListActivity {
 
-    private static final int LIMIT = 20;
+    private static final int LIMIT = 32;
 
-    private static final LinkedList<String> messages = new LinkedList<String>();
-    private static final Set<ArrayAdapter<String>> adapters = new HashSet<ArrayAdapter<String>>();
+    private static final String LOG_FILE = "events.log";
 
-    private static void notifyAdapters() {
-        for (ArrayAdapter<String> adapter : adapters) {
-            adapter.notifyDataSetChanged();
+    // written from any thread, formatted only while an activity is showing it
+    private static final EventLog events = new EventLog(LIMIT);
+    private static final Map<String, String> statuses = new ConcurrentSkipListMap<>();
+
+    // accessed on the main thread only
+    private static final List<String> messages = new ArrayList<>();
+    private static final Set<ArrayAdapter<String>> adapters = new HashSet<>();
+    private static final Set<TextView> headers = new HashSet<>();
+    private static Context context;
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
+    private static volatile boolean attached;
+    private static final AtomicBoolean pending = new AtomicBoolean();
+
+    private static final EventLog.Listener listener = new EventLog.Listener() {
+        @Override
+        public void onEvent() {
+            scheduleRefresh();
+        }
+    };
+
+    private static final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            pending.set(false);
+            if (context == null) {
+                return;
+            }
+            messages.clear();
+            DateFormat format = DateFormat.getTimeInstance(DateFormat.SHORT);
+            for (EventLog.Event event : events.snapshot()) {
+                messages.add(format.format(new Date(event.getTime())) + " - " + formatEvent(context, event));
+            }
+            for (ArrayAdapter<String> adapter : adapters) {
+                adapter.notifyDataSetChanged();
+            }
+            String text = formatStatus();
+            for (TextView header : headers) {
+                header.setText(text);
+            }
+        }
+    };
+
+    private static void scheduleRefresh() {
+        if (attached && pending.compareAndSet(false, true)) {
+            handler.post(refresh);
         }
     }
 
-    public static void addMessage(String message) {
-        DateFormat format = DateFormat.getTimeInstance(DateFormat.SHORT);
-        message = format.format(new Date()) + " - " + message;
-        messages.add(message);
-        while (messages.size() > LIMIT) {
-            messages.removeFirst();
+    private static String formatEvent(Context context, EventLog.Event event) {
+        StringBuilder builder = new StringBuilder();
+        String separator = "";
+        if (event.getCode() != 0) {
+            builder.append(context.getString(event.getCode()));
+            separator = ": ";
+        }
+        for (Object arg : event.getArgs()) {
+            builder.append(separator).append(arg);
+            separator = ", ";
+        }
+        return builder.toString();
+    }
+
+    private static String formatStatus() {
+        StringBuilder builder = new StringBuilder();
+        for (String status : statuses.values()) {
+            if (builder.length() > 0) {
+                builder.append('\n');
+            }
+            builder.append(status);
         }
-        notifyAdapters();
+        return builder.toString();
+    }
+
+    public static void setStatus(String section, String status) {
+        statuses.put(section, status);
+        scheduleRefresh();
+    }
+
+    public static void addMessage(int code, Object... args) {
+        events.add(code, args);
+    }
+
+    public static void addMessage(String message) {
+        events.add(0, message);
     }
 
     public static void clearMessages() {
-        messages.clear();
-        notifyAdapters();
+        events.clear();
+        scheduleRefresh();
+    }
+
+    public static void setLogFile(Context context, boolean enabled) {
+        if (enabled) {
+            final Context applicationContext = context.getApplicationContext();
+            final DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+            events.setFile(new File(context.getFilesDir(), LOG_FILE), new EventLog.Formatter() {
+                @Override
+                public String format(EventLog.Event event) {
+                    return format.format(new Date(event.getTime())) + " " + formatEvent(applicationContext, event);
+                }
+            });
+        } else {
+            events.setFile(null, null);
+        }
     }
 
     private ArrayAdapter<String> adapter;
+    private TextView header;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.status);
+        header = new TextView(this);
+        int padding = getResources().getDimensionPixelSize(R.dimen.status_header_padding);
+        header.setPadding(padding, padding, padding, padding);
+        getListView().addHeaderView(header, null, false);
+        headers.add(header);
         adapter = new ArrayAdapter<String>(this, android.R.layout.simple_list_item_1, android.R.id.text1, messages);
         setListAdapter(adapter);
         adapters.add(adapter);
+        context = getApplicationContext();
+        attached = true;
+        events.setListener(listener);
+        refresh.run();
     }
 
     @Override
     protected void onDestroy() {
+        headers.remove(header);
         adapters.remove(adapter);
+        if (adapters.isEmpty()) {
+            events.setListener(null);
+            attached = false;
+        }
         super.onDestroy();
     }
 
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.content.SharedPreferences;
+
+public final class TrackingConfig {
+
+    private static final int MIXED_MAX_SPEED = 300; // km/h
+
+    private final String deviceId;
+    private final String url;
+    private final String api;
+    private final String provider;
+
+    private final long interval;
+    private final long altInterval;
+    private final double distance;
+    private final double angle;
+    private final double accuracy;
+    private final double maxSpeed;
+    private final boolean smoothing;
+
+    private final boolean adaptive;
+    private final long minInterval;
+    private final long maxInterval;
+
+    private final boolean stationary;
+    private final long stationaryTimeout;
+    private final long heartbeatInterval;
+
+    private final boolean buffer;
+    private final long bufferAge;
+
+    private final boolean sync;
+    private final long syncInterval;
+    private final long syncBacklog;
+
+    private final boolean compaction;
+    private final long compactionBacklog;
+    private final double compactionTolerance;
+
+    private final int timeoutFloor;
+    private final int timeoutCeiling;
+
+    private final int traceRate;
+
+    private final String replayFile;
+    private final int replaySpeed;
+
+    public TrackingConfig(SharedPreferences preferences) {
+        deviceId = preferences.getString(MainActivity.KEY_DEVICE, null);
+        url = preferences.getString(MainActivity.KEY_URL, null);
+        api = preferences.getString(MainActivity.KEY_API, null);
+        provider = preferences.getString(MainActivity.KEY_PROVIDER, "gps");
+
+        interval = Long.parseLong(preferences.getString(MainActivity.KEY_INTERVAL, null)) * 1000;
+        altInterval = Long.parseLong(preferences.getString(MainActivity.KEY_ALT_INTERVAL, null)) * 1000;
+        distance = Integer.parseInt(preferences.getString(MainActivity.KEY_DISTANCE, null));
+        angle = Integer.parseInt(preferences.getString(MainActivity.KEY_ANGLE, null));
+        accuracy = Integer.parseInt(preferences.getString(MainActivity.KEY_ACCURACY, "0"));
+        // switching between satellite and network fixes causes jumps, so mixed mode is always bounded
+        int speedLimit = Integer.parseInt(preferences.getString(MainActivity.KEY_MAX_SPEED, "0"));
+        if (speedLimit <= 0 && isMixedProvider()) {
+            speedLimit = MIXED_MAX_SPEED;
+        }
+        maxSpeed = speedLimit / 3.6;
+        smoothing = preferences.getBoolean(MainActivity.KEY_SMOOTHING, false);
+
+        adaptive = preferences.getBoolean(MainActivity.KEY_ADAPTIVE, false);
+        minInterval = Long.parseLong(preferences.getString(MainActivity.KEY_MIN_INTERVAL, "30")) * 1000;
+        maxInterval = Math.max(minInterval,
+                Long.parseLong(preferences.getString(MainActivity.KEY_MAX_INTERVAL, "1800")) * 1000);
+
+        stationary = preferences.getBoolean(MainActivity.KEY_STATIONARY, false);
+        stationaryTimeout = Long.parseLong(preferences.getString(MainActivity.KEY_STATIONARY_TIMEOUT, "10")) * 60 * 1000;
+        heartbeatInterval = Long.parseLong(preferences.getString(MainActivity.KEY_HEARTBEAT, "60")) * 60 * 1000;
+
+        buffer = preferences.getBoolean(MainActivity.KEY_BUFFER, false);
+        bufferAge = Long.parseLong(preferences.getString(MainActivity.KEY_BUFFER_AGE, "60")) * 1000;
+
+        sync = preferences.getBoolean(MainActivity.KEY_SYNC, false);
+        syncInterval = Long.parseLong(preferences.getString(MainActivity.KEY_SYNC_INTERVAL, "15")) * 60 * 1000;
+        syncBacklog = Long.parseLong(preferences.getString(MainActivity.KEY_SYNC_BACKLOG, "20"));
+
+        compaction = preferences.getBoolean(MainActivity.KEY_COMPACTION, false);
+        compactionBacklog = Long.parseLong(preferences.getString(MainActivity.KEY_COMPACTION_BACKLOG, "500"));
+        compactionTolerance = Integer.parseInt(preferences.getString(MainActivity.KEY_COMPACTION_TOLERANCE, "10"));
+
+        timeoutFloor = Integer.parseInt(preferences.getString(MainActivity.KEY_TIMEOUT_FLOOR, "2")) * 1000;
+        timeoutCeiling = Integer.parseInt(preferences.getString(MainActivity.KEY_TIMEOUT_CEILING, "30")) * 1000;
+
+        traceRate = Integer.parseInt(preferences.getString(MainActivity.KEY_TRACE_RATE, "0"));
+
+        replayFile = preferences.getString(MainActivity.KEY_REPLAY_FILE, "track.gpx");
+        replaySpeed = Integer.parseInt(preferences.getString(MainActivity.KEY_REPLAY_SPEED, "1"));
+    }
+
+    public String getDeviceId() { return deviceId; }
+
+    public String getUrl() { return url; }
+
+    public String getApi() { return api; }
+
+    public String getProvider() { return provider; }
+
+    public long getInterval() { return interval; }
+
+    public long getAltInterval() { return altInterval; }
+
+    public double getDistance() { return distance; }
+
+    public double getAngle() { return angle; }
+
+    public double getAccuracy() { return accuracy; }
+
+    public double getMaxSpeed() { return maxSpeed; }
+
+    public boolean getSmoothing() { return smoothing; }
+
+    public boolean getAdaptive() { return adaptive; }
+
+    public long getMinInterval() { return minInterval; }
+
+    public long getMaxInterval() { return maxInterval; }
+
+    public boolean getStationary() { return stationary; }
+
+    public long getStationaryTimeout() { return stationaryTimeout; }
+
+    public long getHeartbeatInterval() { return heartbeatInterval; }
+
+    public boolean getBuffer() { return buffer; }
+
+    public long getBufferAge() { return bufferAge; }
+
+    public boolean getSync() { return sync; }
+
+    public long getSyncInterval() { return syncInterval; }
+
+    public long getSyncBacklog() { return syncBacklog; }
+
+    public boolean getCompaction() { return compaction; }
+
+    public long getCompactionBacklog() { return compactionBacklog; }
+
+    public double getCompactionTolerance() { return compactionTolerance; }
+
+    public int getTimeoutFloor() { return timeoutFloor; }
+
+    public int getTimeoutCeiling() { return timeoutCeiling; }
+
+    public int getTraceRate() { return traceRate; }
+
+    public String getReplayFile() { return replayFile; }
+
+    public int getReplaySpeed() { return replaySpeed; }
+
+    public boolean isMixedProvider() {
+        return provider.equals("mixed");
+    }
+
+    public boolean isReplayProvider() {
+        return provider.equals("replay");
+    }
+
+    public boolean isProviderChanged(TrackingConfig other) {
+        return isMixedProvider() != other.isMixedProvider() || isReplayProvider() != other.isReplayProvider()
+                || isReplayProvider() && (!replayFile.equals(other.replayFile) || replaySpeed != other.replaySpeed);
+    }
+
+    public boolean isRequestChanged(TrackingConfig other) {
+        return interval != other.interval || altInterval != other.altInterval
+                || distance != other.distance || angle != other.angle
+                || adaptive != other.adaptive || minInterval != other.minInterval || maxInterval != other.maxInterval
+                || !provider.equals(other.provider);
+    }
+
+    public boolean isFilterChanged(TrackingConfig other) {
+        return interval != other.interval || distance != other.distance || angle != other.angle
+                || accuracy != other.accuracy || maxSpeed != other.maxSpeed;
+    }
+
+}
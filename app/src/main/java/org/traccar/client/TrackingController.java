@@ -16,11 +16,9 @@
 package org.traccar.client;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.location.Location;
-import android.os.Build;
 import android.os.Handler;
-import android.os.PowerManager;
+import android.os.Looper;
 import android.preference.PreferenceManager;
 import android.telephony.TelephonyManager;
 import android.util.Log;
@@ -29,70 +27,170 @@ import android.widget.Toast;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-public class TrackingController implements PositionProvider.PositionListener, NetworkManager.NetworkHandler {
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TrackingController implements PositionProvider.PositionListener, NetworkManager.NetworkHandler,
+        TrackingPipeline.Delegate {
 
     private static final String TAG = TrackingController.class.getSimpleName();
-    private static final int RETRY_DELAY = 30 * 1000;
     private static final int WAKE_LOCK_TIMEOUT = 120 * 1000;
-
-    private boolean isOnline;
-    private boolean isWaiting;
+    private static final long STUCK_TIMEOUT = 5 * WAKE_LOCK_TIMEOUT;
 
     private Context context;
+    private Looper looper;
     private Handler handler;
-    private SharedPreferences preferences;
+
+    private final AtomicReference<TrackingConfig> config = new AtomicReference<>();
+    private TrackingConfig appliedConfig;
 
     private String url, api;
-    private Position oldDbId;
 
     String cellidOld, celllacOld;
     Double latOld, lonOld;
 
     private PositionProvider positionProvider;
     private DatabaseHelper databaseHelper;
+    private ControllerJournal journal;
     private NetworkManager networkManager;
+    private TrackingPipeline pipeline;
 
-    private PowerManager.WakeLock wakeLock;
+    private final WakeLockManager wakeLocks;
 
-    private void lock() {
-        if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.GINGERBREAD_MR1) {
-            wakeLock.acquire();
-        } else {
-            wakeLock.acquire(WAKE_LOCK_TIMEOUT);
+    private final Transport transport = new Transport() {
+        @Override
+        public void send(String request, final Transport.Handler handler) {
+            RequestManager.sendRequestAsync(request, new RequestManager.RequestHandler() {
+                @Override
+                public void onComplete(boolean success) {
+                    handler.onComplete(success);
+                }
+            });
         }
+    };
+
+    public TrackingController(Context context, Looper looper) {
+        this.context = context;
+        this.looper = looper;
+        handler = new Handler(looper);
+
+        databaseHelper = new DatabaseHelper(context);
+        pipeline = new TrackingPipeline(new HandlerClock(context, looper), databaseHelper, transport, this);
+
+        TrackingConfig config = new TrackingConfig(PreferenceManager.getDefaultSharedPreferences(context));
+        this.config.set(config);
+        appliedConfig = config;
+        configure(config);
+
+        journal = new ControllerJournal(context, looper);
+        positionProvider = createPositionProvider(config);
+        networkManager = new NetworkManager(context, looper, this);
+        networkManager.setUrl(url);
+        pipeline.setOnline(networkManager.isOnline());
+
+        cellidOld = journal.getCellId();
+        celllacOld = journal.getCellLac();
+        latOld = journal.getCellLatitude();
+        lonOld = journal.getCellLongitude();
+
+        wakeLocks = new WakeLockManager(context, getClass().getName(), WAKE_LOCK_TIMEOUT);
     }
 
-    private void unlock() {
-        if (wakeLock.isHeld()) {
-            wakeLock.release();
+    private PositionProvider createPositionProvider(TrackingConfig config) {
+        PositionProvider provider;
+        if (BuildConfig.DEBUG && config.isReplayProvider()) {
+            provider = new ReplayPositionProvider(context, looper, config, this);
+        } else if (config.isMixedProvider()) {
+            provider = new MixedPositionProvider(context, looper, config, this);
+        } else {
+            provider = new SimplePositionProvider(context, looper, config, this);
         }
+        provider.setLastFixTime(journal.getLastFixTime());
+        return provider;
     }
 
-    public TrackingController(Context context) {
-        this.context = context;
-        handler = new Handler();
-        preferences = PreferenceManager.getDefaultSharedPreferences(context);
-        api = preferences.getString(MainActivity.KEY_API, null);
+    private void configure(TrackingConfig config) {
+        url = config.getUrl();
+        api = config.getApi();
+        pipeline.setUrl(url);
+        pipeline.setDeviceId(config.getDeviceId());
+        pipeline.setTraceRate(config.getTraceRate());
+        pipeline.setBuffer(config.getBuffer(), config.getBufferAge());
+        pipeline.setSync(config.getSync(), config.getSyncInterval(), config.getSyncBacklog());
+        pipeline.setCompaction(config.getCompaction(), config.getCompactionBacklog(), config.getCompactionTolerance());
+        RequestManager.getTimeoutPolicy().setBounds(config.getTimeoutFloor(), config.getTimeoutCeiling());
+        RequestLocationManager.getTimeoutPolicy().setBounds(config.getTimeoutFloor(), config.getTimeoutCeiling());
+    }
+
+    public PipelineMetrics getMetrics() {
+        return pipeline.getMetrics();
+    }
 
-        if (preferences.getString(MainActivity.KEY_PROVIDER, "gps").equals("mixed")) {
-            positionProvider = new MixedPositionProvider(context, this);
+    public void updateConfig(TrackingConfig config) {
+        this.config.set(config);
+        handler.removeCallbacks(applyTask);
+        handler.post(applyTask);
+    }
+
+    private final Runnable applyTask = new Runnable() {
+        @Override
+        public void run() {
+            applyConfig(config.get());
+        }
+    };
+
+    private void applyConfig(TrackingConfig config) {
+        if (config == appliedConfig) {
+            return;
+        }
+        long startTime = System.nanoTime();
+        TrackingConfig previous = appliedConfig;
+        appliedConfig = config;
+        configure(config);
+        networkManager.setUrl(url);
+
+        if (config.isProviderChanged(previous)) {
+            positionProvider.stopUpdates();
+            positionProvider = createPositionProvider(config);
+            try {
+                positionProvider.startUpdates();
+            } catch (SecurityException e) {
+                Log.w(TAG, e);
+            }
         } else {
-            positionProvider = new SimplePositionProvider(context, this);
+            positionProvider.applyConfig(config);
         }
-        databaseHelper = new DatabaseHelper(context);
-        networkManager = new NetworkManager(context, this);
-        isOnline = networkManager.isOnline();
+        pipeline.signal();
 
-        url = preferences.getString(MainActivity.KEY_URL, null);
+        getMetrics().onReconfigure(System.nanoTime() - startTime);
+        StatusActivity.addMessage(R.string.status_config_applied);
+        Log.i(TAG, "config applied in " + (System.nanoTime() - startTime) / 1000 + " us");
+    }
 
-        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-        wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, getClass().getName());
+    // a running looper is not enough, an operation that never completes or a provider gone quiet is a hang
+    public boolean isHealthy() {
+        return wakeLocks.getOldestHold() < STUCK_TIMEOUT && positionProvider.isDelivering();
     }
 
     public void start() {
-        if (isOnline) {
-            read();
+        final Set<Long> delivered = journal.getDelivered();
+        if (!delivered.isEmpty()) {
+            log("recover " + delivered.size());
+            pipeline.restoreDelivered(delivered);
+            databaseHelper.deletePositionsAsync(delivered, new DatabaseHelper.DatabaseHandler<Integer>() {
+                @Override
+                public void onComplete(boolean success, Integer result) {
+                    if (success) {
+                        journal.onDeleted(delivered);
+                    }
+                }
+            });
+        }
+        if (journal.getStallStart() >= 0) {
+            pipeline.restoreStall(journal.getStallStart());
         }
+        pipeline.start();
         try {
             positionProvider.startUpdates();
         } catch (SecurityException e) {
@@ -109,146 +207,126 @@ public class TrackingController implements PositionProvider.PositionListener, Ne
             Log.w(TAG, e);
         }
         handler.removeCallbacksAndMessages(null);
+        persistUnsaved(pipeline.stop());
+        journal.flush();
+        Log.i(TAG, "pipeline " + getMetrics().format(System.currentTimeMillis()));
+    }
+
+    private void persistUnsaved(List<Position> positions) {
+        if (!positions.isEmpty()) {
+            log("persist " + positions.size());
+            WakeLockManager.Scope wakeLock = wakeLocks.acquire("persist");
+            try {
+                databaseHelper.insertPositions(positions);
+            } catch (RuntimeException e) {
+                Log.w(TAG, e);
+            } finally {
+                wakeLock.release();
+            }
+        }
     }
 
     @Override
     public void onPositionUpdate(Position position) {
-        StatusActivity.addMessage(context.getString(R.string.status_location_update));
+        StatusActivity.addMessage(R.string.status_location_update);
         if (position != null) {
-            write(position);
+            journal.setLastFixTime(position.getTime().getTime());
+            pipeline.onPositionUpdate(position);
         }
     }
 
     @Override
-    public void onNetworkUpdate(boolean isOnline) {
-        StatusActivity.addMessage(context.getString(R.string.status_connectivity_change));
-        if (!this.isOnline && isOnline) {
-            read();
+    public void onNetworkUpdate(NetworkManager.State state) {
+        StatusActivity.addMessage(R.string.status_connectivity_change, state);
+        if (state == NetworkManager.State.UNMETERED && appliedConfig.getSync()) {
+            pipeline.flush("wifi");
         }
-        this.isOnline = isOnline;
+        pipeline.setOnline(state.isUsable());
+    }
+
+    @Override
+    public TrackingPipeline.Lock acquireLock(String operation) {
+        return wakeLocks.acquire(operation);
     }
 
-    //
-    // State transition examples:
-    //
-    // write -> read -> send -> delete -> read
-    //
-    // read -> send -> retry -> read -> send
-    //
+    @Override
+    public boolean isWindowForced() {
+        return networkManager.isUnmetered() || PositionProvider.isCharging(context);
+    }
 
-    private void log(String action, Position position) {
-        if (position != null) {
-            if (position.getGsm().equals(0)) {
-                action += " (" +
-                        "id:" + position.getId() +
-                        " gsm:" + position.getGsm() +
-                        " time:" + position.getTime().getTime() / 1000 +
-                        " lat:" + position.getLatitude() +
-                        " lon:" + position.getLongitude() + ")";
-            }else {
-                action += " (" +
-                        "id:" + position.getId() +
-                        " gsm:" + position.getGsm() +
-                        " time:" + position.getTime().getTime() / 1000 +
-                        " cid:" + position.getLatitude() +
-                        " lac:" + position.getLongitude() + ")";
+    @Override
+    public void prepare(Position position, final TrackingPipeline.PrepareHandler handler) {
+        if (position.getGsm() != null && position.getGsm() == 1) {
+            // the lookup completes on another thread after the read scope is gone
+            final WakeLockManager.Scope wakeLock = wakeLocks.acquire("resolve");
+            TrackingPipeline.PrepareHandler releasingHandler = new TrackingPipeline.PrepareHandler() {
+                @Override
+                public void onComplete(TrackingPipeline.Preparation result) {
+                    wakeLock.release();
+                    handler.onComplete(result);
+                }
+            };
+            try {
+                getLocation(position, String.valueOf(position.getLatitude()), String.valueOf(position.getLongitude()),
+                        releasingHandler);
+            } catch (RuntimeException e) {
+                wakeLock.release();
+                throw e;
             }
+        } else {
+            handler.onComplete(TrackingPipeline.Preparation.SEND);
         }
-        Log.d(TAG, action);
     }
 
-    private void write(Position position) {
-        log("write", position);
-        lock();
-        databaseHelper.insertPositionAsync(position, new DatabaseHelper.DatabaseHandler<Void>() {
-            @Override
-            public void onComplete(boolean success, Void result) {
-                if (success) {
-                    if (isOnline && isWaiting) {
-                        read();
-                        isWaiting = false;
-                    }
-                }
-                unlock();
-            }
-        });
+    @Override
+    public void onSendResult(boolean success) {
+        if (!success) {
+            StatusActivity.addMessage(R.string.status_send_fail);
+        }
+        networkManager.onSendResult(success);
     }
 
-    private void read() {
-        log("read", null);
-        lock();
-        databaseHelper.selectPositionAsync(new DatabaseHelper.DatabaseHandler<Position>() {
-            @Override
-            public void onComplete(boolean success, Position result) {
-                if (success) {
-                    if (result != null) {
-                        if (result.getDeviceId().equals(preferences.getString(MainActivity.KEY_DEVICE, null))) {
-                            if (result.getGsm() == 1) {
-                                getLocation(result, String.valueOf(result.getLatitude()), String.valueOf(result.getLongitude()));
-                            } else {
-                                send(result);
-                            }
-                        } else {
-                            delete(result);
-                        }
-                    } else {
-                        isWaiting = true;
-                    }
-                } else {
-                    retry();
-                }
-                unlock();
-            }
-        });
+    @Override
+    public void onDelivered(long id) {
+        journal.onDelivered(id);
     }
 
-    public void delete(Position position) {
-        log("delete", position);
-        lock();
-        databaseHelper.deletePositionAsync(position.getId(), new DatabaseHelper.DatabaseHandler<Void>() {
-            @Override
-            public void onComplete(boolean success, Void result) {
-                if (success) {
-                    read();
-                } else {
-                    retry();
-                }
-                unlock();
-            }
-        });
+    @Override
+    public void onDeleted(long id) {
+        journal.onDeleted(id);
     }
 
-    private void send(final Position position) {
-        log("send", position);
-        lock();
-        String request = ProtocolFormatter.formatRequest(url, position);
-        RequestManager.sendRequestAsync(request, new RequestManager.RequestHandler() {
-            @Override
-            public void onComplete(boolean success) {
-                if (success) {
-                    delete(position);
-                } else {
-                    StatusActivity.addMessage(context.getString(R.string.status_send_fail));
-                    retry();
-                }
-                unlock();
-            }
-        });
+    @Override
+    public void onStallStart(long time) {
+        if (journal.getStallStart() < 0) {
+            journal.setStallStart(time);
+        }
     }
 
-    private void retry() {
-        log("retry", null);
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                if (isOnline) {
-                    read();
-                }
-            }
-        }, RETRY_DELAY);
+    @Override
+    public void onStallEnd() {
+        journal.setStallStart(-1);
     }
 
-    private void getLocation(final Position positionC, final String cellid, final String celllac) {
+    @Override
+    public void onDropped(int count) {
+        Log.w(TAG, count + " positions dropped");
+        StatusActivity.addMessage(R.string.status_positions_dropped, count);
+    }
+
+    @Override
+    public void onStatus() {
+        StatusActivity.setStatus("pipeline", getMetrics().format(System.currentTimeMillis()));
+        StatusActivity.setStatus("transport", RequestManager.getTimeoutPolicy().format());
+    }
+
+    @Override
+    public void log(String message) {
+        Log.d(TAG, message);
+    }
+
+    private void getLocation(final Position positionC, final String cellid, final String celllac,
+                             final TrackingPipeline.PrepareHandler handler) {
 
         if (cellid != null && (cellidOld == null || !cellid.equalsIgnoreCase(cellidOld))
                 || (celllac != null && (celllacOld == null || !celllac.equalsIgnoreCase(celllacOld)))) {
@@ -277,21 +355,24 @@ public class TrackingController implements PositionProvider.PositionListener, Ne
                             positionC.setLatitude(targetLocation.getLatitude());
                             positionC.setLongitude(targetLocation.getLongitude());
 
-                            send(positionC);
+                            handler.onComplete(TrackingPipeline.Preparation.SEND);
 
                             cellidOld = cellid;
                             celllacOld = celllac;
 
                             latOld = Double.parseDouble(jsonResponse.getString("lat"));
                             lonOld = Double.parseDouble(jsonResponse.getString("lon"));
+                            journal.setCell(cellidOld, celllacOld, latOld, lonOld);
 
                         } catch (JSONException e) {
                             StatusActivity.addMessage("OpenCellid Error");
                             Toast.makeText(context, "OpenCellid Error, Please Check Your Api Key", Toast.LENGTH_SHORT).show();
-                            delete(positionC);
+                            handler.onComplete(TrackingPipeline.Preparation.DISCARD);
                             e.printStackTrace();
                         }
 
+                    } else {
+                        handler.onComplete(TrackingPipeline.Preparation.RETRY);
                     }
                 }
             });
@@ -305,7 +386,7 @@ public class TrackingController implements PositionProvider.PositionListener, Ne
             positionC.setLatitude(targetLocation.getLatitude());
             positionC.setLongitude(targetLocation.getLongitude());
 
-            send(positionC);
+            handler.onComplete(TrackingPipeline.Preparation.SEND);
 
         }
 
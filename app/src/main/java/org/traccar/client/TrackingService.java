@@ -21,9 +21,14 @@ import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.graphics.BitmapFactory;
 import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Process;
+import android.preference.PreferenceManager;
 import android.util.Log;
 
 import java.lang.reflect.InvocationTargetException;
@@ -34,7 +39,41 @@ public class TrackingService extends Service {
     private static final String TAG = TrackingService.class.getSimpleName();
     private static final int NOTIFICATION_ID = 1;
 
-    private TrackingController trackingController;
+    private HandlerThread thread;
+    private Handler handler;
+    private volatile TrackingController trackingController;
+
+    private final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            if (key.equals(MainActivity.KEY_EVENT_LOG)) {
+                StatusActivity.setLogFile(TrackingService.this, sharedPreferences.getBoolean(key, false));
+                return;
+            }
+            TrackingController controller = trackingController;
+            if (controller != null && !key.equals(MainActivity.KEY_STATUS) && !key.startsWith("supervisor_")) {
+                try {
+                    controller.updateConfig(new TrackingConfig(sharedPreferences));
+                } catch (NumberFormatException e) {
+                    Log.w(TAG, e);
+                }
+            }
+        }
+    };
+
+    private final Runnable heartbeat = new Runnable() {
+        @Override
+        public void run() {
+            TrackingController controller = trackingController;
+            if (controller != null && controller.isHealthy()) {
+                ServiceSupervisor.heartbeat();
+            } else {
+                Log.w(TAG, "no progress, heartbeat skipped");
+            }
+            handler.postDelayed(this, ServiceSupervisor.HEARTBEAT_PERIOD);
+        }
+    };
 
     @SuppressWarnings("deprecation")
     private static Notification createNotification(Context context) {
@@ -94,16 +133,32 @@ public class TrackingService extends Service {
 
     @Override
     public void onCreate() {
+        final long createTime = System.currentTimeMillis();
         Log.i(TAG, "service create");
-        StatusActivity.addMessage(getString(R.string.status_service_create));
-
-        trackingController = new TrackingController(this);
-        trackingController.start();
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ECLAIR) {
             startForeground(NOTIFICATION_ID, createNotification(this));
             //startService(new Intent(this, HideNotificationService.class));
         }
+
+        StatusActivity.setLogFile(this, PreferenceManager.getDefaultSharedPreferences(this)
+                .getBoolean(MainActivity.KEY_EVENT_LOG, false));
+        StatusActivity.addMessage(R.string.status_service_create);
+
+        thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                trackingController = new TrackingController(TrackingService.this, thread.getLooper());
+                trackingController.getMetrics().setStartTime(createTime);
+                trackingController.start();
+            }
+        });
+        handler.post(heartbeat);
+
+        PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(preferenceListener);
     }
 
     @Override
@@ -129,15 +184,25 @@ public class TrackingService extends Service {
     @Override
     public void onDestroy() {
         Log.i(TAG, "service destroy");
-        StatusActivity.addMessage(getString(R.string.status_service_destroy));
+        StatusActivity.addMessage(R.string.status_service_destroy);
+        StatusActivity.setLogFile(this, false);
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ECLAIR) {
             stopForeground(true);
         }
 
-        if (trackingController != null) {
-            trackingController.stop();
-        }
+        PreferenceManager.getDefaultSharedPreferences(this).unregisterOnSharedPreferenceChangeListener(preferenceListener);
+        ServiceSupervisor.clearHeartbeat();
+        handler.removeCallbacks(heartbeat);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (trackingController != null) {
+                    trackingController.stop();
+                }
+                thread.quit();
+            }
+        });
     }
 
 }
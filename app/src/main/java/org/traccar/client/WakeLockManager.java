@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class WakeLockManager {
+
+    private static final String TAG = WakeLockManager.class.getSimpleName();
+
+    private static final Metrics.Counter heldTime = Metrics.counter("wakelock.time");
+    private static final Metrics.Gauge heldScopes = Metrics.gauge("wakelock.held");
+    private static final Metrics.Counter timeouts = Metrics.counter("wakelock.timeouts");
+    private static final Metrics.Label longest = Metrics.label("wakelock.longest");
+
+    public class Scope implements TrackingPipeline.Lock {
+
+        private final String operation;
+        private final Metrics.Histogram holdTime;
+        private final long startTime;
+        private boolean released;
+
+        private Scope(String operation, Metrics.Histogram holdTime, long startTime) {
+            this.operation = operation;
+            this.holdTime = holdTime;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void release() {
+            WakeLockManager.this.release(this);
+        }
+
+    }
+
+    private final PowerManager.WakeLock wakeLock;
+    private final long timeout;
+    private final Map<String, Metrics.Histogram> holdTimes = new HashMap<>();
+    private final Set<Scope> open = new HashSet<>();
+
+    private int scopeCount;
+    private long heldStart;
+    private long longestHold;
+
+    public WakeLockManager(Context context, String tag, long timeout) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, tag);
+        wakeLock.setReferenceCounted(false);
+        this.timeout = timeout;
+    }
+
+    // every scope re-arms the timeout, the lock is released when the last scope closes
+    public synchronized Scope acquire(String operation) {
+        long now = SystemClock.elapsedRealtime();
+        if (Build.VERSION.SDK_INT <= Build.VERSION_CODES.GINGERBREAD_MR1) {
+            if (scopeCount == 0) {
+                wakeLock.acquire();
+            }
+        } else {
+            wakeLock.acquire(timeout);
+        }
+        if (scopeCount++ == 0) {
+            heldStart = now;
+        }
+        heldScopes.set(scopeCount);
+        Metrics.Histogram holdTime = holdTimes.get(operation);
+        if (holdTime == null) {
+            holdTime = Metrics.histogram("wakelock.hold." + operation, Metrics.TIME_BUCKETS);
+            holdTimes.put(operation, holdTime);
+        }
+        Scope scope = new Scope(operation, holdTime, now);
+        open.add(scope);
+        return scope;
+    }
+
+    // an operation that never completes never releases its scope
+    public synchronized long getOldestHold() {
+        long now = SystemClock.elapsedRealtime();
+        long oldest = 0;
+        for (Scope scope : open) {
+            oldest = Math.max(oldest, now - scope.startTime);
+        }
+        return oldest;
+    }
+
+    private synchronized void release(Scope scope) {
+        if (scope.released) {
+            return;
+        }
+        scope.released = true;
+        open.remove(scope);
+
+        long now = SystemClock.elapsedRealtime();
+        long duration = now - scope.startTime;
+        scope.holdTime.record(duration);
+        if (duration > timeout) {
+            timeouts.inc();
+            Log.w(TAG, scope.operation + " held wake lock past timeout");
+        }
+        if (duration > longestHold) {
+            longestHold = duration;
+            longest.set(scope.operation + " " + duration + " ms");
+        }
+
+        if (--scopeCount == 0) {
+            heldTime.add(now - heldStart);
+            if (wakeLock.isHeld()) {
+                wakeLock.release();
+            }
+        }
+        heldScopes.set(scopeCount);
+    }
+
+}
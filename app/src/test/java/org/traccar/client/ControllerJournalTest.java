@@ -0,0 +1,151 @@
+package org.traccar.client;
+
+import android.content.Context;
+import android.location.Location;
+import android.os.Looper;
+import android.preference.PreferenceManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ControllerJournalTest {
+
+    private DatabaseHelper databaseHelper;
+    private ControllerJournal journal;
+
+    // delayed saves of the dead process never run, only what the journal committed survives
+    private void restart() {
+        databaseHelper.close();
+        databaseHelper = new DatabaseHelper(RuntimeEnvironment.application);
+        journal = new ControllerJournal(RuntimeEnvironment.application, Looper.getMainLooper());
+        databaseHelper.deletePositions(journal.getDelivered());
+        journal.onDeleted(journal.getDelivered());
+    }
+
+    // returns false if the process was killed during the upload
+    private boolean upload(List<Long> received, int crashPoint) {
+        Position position = databaseHelper.selectPosition();
+        if (position == null || crashPoint == 0) {
+            return position == null;
+        }
+        received.add(position.getTime().getTime());
+        journal.onDelivered(position.getId());
+        if (crashPoint == 1) {
+            return false;
+        }
+        databaseHelper.deletePosition(position.getId());
+        if (crashPoint == 2) {
+            return false;
+        }
+        journal.onDeleted(position.getId());
+        return true;
+    }
+
+    // database tasks run in order on one executor, so once this one completes the earlier ones have too
+    private static void waitForDatabase(DatabaseHelper databaseHelper) throws Exception {
+        final AtomicBoolean done = new AtomicBoolean();
+        databaseHelper.countPositionsAsync(new PositionStore.Handler<Long>() {
+            @Override
+            public void onComplete(boolean success, Long result) {
+                done.set(true);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!done.get()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+    }
+
+    @Test
+    public void testRestartUnderLoad() throws Exception {
+
+        databaseHelper = new DatabaseHelper(RuntimeEnvironment.application);
+        journal = new ControllerJournal(RuntimeEnvironment.application, Looper.getMainLooper());
+
+        Random random = new Random(1);
+        List<Long> received = new ArrayList<>();
+        long written = 0;
+
+        for (int i = 0; i < 500; i++) {
+            int count = random.nextInt(3);
+            for (int j = 0; j < count; j++) {
+                Position position = PositionProvider.createPosition("123456789012345", new Location("gps"), 0);
+                position.setTime(new Date(written++));
+                databaseHelper.insertPosition(position);
+            }
+            if (!upload(received, random.nextInt(6))) {
+                restart();
+            }
+        }
+
+        while (databaseHelper.selectPosition() != null) {
+            if (!upload(received, random.nextInt(6))) {
+                restart();
+            }
+        }
+
+        assertEquals(written, received.size());
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(i, (long) received.get(i));
+        }
+        assertEquals(0, journal.getDelivered().size());
+
+    }
+
+    @Test
+    public void testRecoveryOnStart() throws Exception {
+
+        Context context = RuntimeEnvironment.application;
+        PreferenceManager.setDefaultValues(context, R.xml.preferences, false);
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putString(MainActivity.KEY_DEVICE, "123456789012345")
+                .putString(MainActivity.KEY_URL, "http://127.0.0.1:1")
+                .commit();
+
+        DatabaseHelper databaseHelper = new DatabaseHelper(context);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Position position = PositionProvider.createPosition("123456789012345", new Location("gps"), 0);
+            position.setTime(new Date(i * 1000));
+            databaseHelper.insertPosition(position);
+            ids.add(position.getId());
+        }
+
+        // the previous process died after the server accepted two positions, before they were deleted
+        ControllerJournal journal = new ControllerJournal(context, Looper.getMainLooper());
+        journal.onDelivered(ids.get(0));
+        journal.onDelivered(ids.get(1));
+        journal.flush();
+
+        TrackingController controller = new TrackingController(context, Looper.getMainLooper());
+        controller.start();
+        waitForDatabase(databaseHelper);
+        controller.stop();
+
+        List<Long> remaining = new ArrayList<>();
+        for (Position position : databaseHelper.selectPositions(0, ids.size())) {
+            remaining.add(position.getId());
+        }
+        assertEquals(ids.subList(2, ids.size()), remaining);
+        assertTrue(new ControllerJournal(context, Looper.getMainLooper()).getDelivered().isEmpty());
+
+    }
+
+}
@@ -10,8 +10,11 @@ import org.robolectric.RobolectricGradleTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
@@ -26,7 +29,7 @@ public class DatabaseHelperTest {
 
         SQLiteDatabase db = databaseHelper.getWritableDatabase();
 
-        Position position = new Position("123456789012345", new Location("gps"), 0);
+        Position position = PositionProvider.createPosition("123456789012345", new Location("gps"), 0);
         position.setTime(new Date(0));
 
         assertNull(databaseHelper.selectPosition());
@@ -43,4 +46,28 @@ public class DatabaseHelperTest {
 
     }
 
+    @Test
+    public void testBatch() throws Exception {
+
+        DatabaseHelper databaseHelper = new DatabaseHelper(RuntimeEnvironment.application);
+
+        Position first = PositionProvider.createPosition("123456789012345", new Location("gps"), 0);
+        first.setTime(new Date(0));
+        Position second = PositionProvider.createPosition("123456789012345", new Location("gps"), 0);
+        second.setTime(new Date(1000));
+
+        databaseHelper.insertPositions(Arrays.asList(first, second));
+
+        assertEquals(2, databaseHelper.countPositions());
+
+        Position position = databaseHelper.selectPosition();
+        assertNotNull(position);
+        assertEquals(0, position.getTime().getTime());
+
+        position = databaseHelper.selectPosition(Collections.singleton(position.getId()));
+        assertNotNull(position);
+        assertEquals(1000, position.getTime().getTime());
+
+    }
+
 }
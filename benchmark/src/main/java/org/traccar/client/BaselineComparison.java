@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// compares two JMH csv result files, the baseline is the run of the previous release
+public final class BaselineComparison {
+
+    private static final double THRESHOLD = 0.1;
+
+    private BaselineComparison() {
+    }
+
+    private static class Result {
+
+        private final double score;
+        private final String unit;
+
+        Result(double score, String unit) {
+            this.score = score;
+            this.unit = unit;
+        }
+
+        // throughput grows with performance, allocation and time per operation shrink
+        boolean isHigherBetter() {
+            return unit.endsWith("/s") || unit.endsWith("/ms") || unit.endsWith("/us") || unit.endsWith("/ns");
+        }
+
+    }
+
+    static List<String> split(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    static Map<String, Result> read(File file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        if (!file.exists()) {
+            return results;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            List<String> header = split(reader.readLine());
+            int scoreIndex = header.indexOf("Score");
+            int unitIndex = header.indexOf("Unit");
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                List<String> values = split(line);
+                StringBuilder key = new StringBuilder(values.get(0).replace("org.traccar.client.", ""));
+                for (int i = unitIndex + 1; i < values.size(); i++) {
+                    key.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(values.get(i));
+                }
+                double score = Double.parseDouble(values.get(scoreIndex).replace(',', '.'));
+                results.put(key.toString(), new Result(score, values.get(unitIndex)));
+            }
+        } finally {
+            reader.close();
+        }
+        return results;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, Result> baseline = read(new File(args[0]));
+        Map<String, Result> current = read(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result result = entry.getValue();
+            Result previous = baseline.get(entry.getKey());
+            if (previous == null || previous.score == 0) {
+                System.out.println(String.format(Locale.US, "%-70s %14.3f %-8s (no baseline)",
+                        entry.getKey(), result.score, result.unit));
+                continue;
+            }
+            double change = (result.score - previous.score) / previous.score;
+            boolean regression = result.isHigherBetter() ? change < -THRESHOLD : change > THRESHOLD;
+            if (regression) {
+                regressions += 1;
+            }
+            System.out.println(String.format(Locale.US, "%-70s %14.3f -> %14.3f %-8s %+6.1f%%%s",
+                    entry.getKey(), previous.score, result.score, result.unit, change * 100,
+                    regression ? "  REGRESSION" : ""));
+        }
+        System.out.println(regressions + " regressions beyond " + (int) (THRESHOLD * 100) + "% against " + args[0]);
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.List;
+
+// embedded SQLite store with the schema and queries of DatabaseHelper
+public class JdbcPositionStore {
+
+    private static final String[] COLUMNS = {
+            "deviceId", "time", "latitude", "longitude", "altitude", "speed", "course", "battery", "gsm" };
+
+    private final Connection connection;
+    private final PreparedStatement insert;
+    private final PreparedStatement select;
+    private final PreparedStatement delete;
+
+    public JdbcPositionStore(String url) throws SQLException {
+        connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS position (" +
+                    "id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                    "deviceId TEXT," +
+                    "time INTEGER," +
+                    "latitude REAL," +
+                    "longitude REAL," +
+                    "altitude REAL," +
+                    "speed REAL," +
+                    "course REAL," +
+                    "battery REAL," +
+                    "gsm INTEGER)");
+        }
+        insert = connection.prepareStatement(
+                "INSERT INTO position (deviceId, time, latitude, longitude, altitude, speed, course, battery, gsm) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+        select = connection.prepareStatement("SELECT * FROM position ORDER BY id LIMIT 1");
+        delete = connection.prepareStatement("DELETE FROM position WHERE id = ?");
+    }
+
+    public static Object[] toRow(Position position) {
+        return new Object[] {
+                position.getDeviceId(), position.getTime().getTime(),
+                position.getLatitude(), position.getLongitude(), position.getAltitude(),
+                position.getSpeed(), position.getCourse(), position.getBattery(), position.getGsm() };
+    }
+
+    public static Position fromRow(long id, Object[] row) {
+        Position position = new Position();
+        position.setId(id);
+        position.setDeviceId((String) row[0]);
+        position.setTime(new Date(((Number) row[1]).longValue()));
+        position.setLatitude(((Number) row[2]).doubleValue());
+        position.setLongitude(((Number) row[3]).doubleValue());
+        position.setAltitude(((Number) row[4]).doubleValue());
+        position.setSpeed(((Number) row[5]).doubleValue());
+        position.setCourse(((Number) row[6]).doubleValue());
+        position.setBattery(((Number) row[7]).doubleValue());
+        position.setGsm(row[8] != null ? ((Number) row[8]).intValue() : 0);
+        return position;
+    }
+
+    public void insertPositions(List<Position> positions) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            for (Position position : positions) {
+                Object[] row = toRow(position);
+                for (int i = 0; i < row.length; i++) {
+                    insert.setObject(i + 1, row[i]);
+                }
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        position.setId(keys.getLong(1));
+                    }
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    public Position selectPosition() throws SQLException {
+        try (ResultSet resultSet = select.executeQuery()) {
+            if (!resultSet.next()) {
+                return null;
+            }
+            Object[] row = new Object[COLUMNS.length];
+            for (int i = 0; i < COLUMNS.length; i++) {
+                row[i] = resultSet.getObject(COLUMNS[i]);
+            }
+            return fromRow(resultSet.getLong("id"), row);
+        }
+    }
+
+    public void deletePosition(long id) throws SQLException {
+        delete.setLong(1, id);
+        if (delete.executeUpdate() != 1) {
+            throw new SQLException("Position " + id + " not found");
+        }
+    }
+
+    public void close() throws SQLException {
+        connection.close();
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LocationFilterBenchmark {
+
+    private final List<Position> track = new ArrayList<>();
+    private LocationFilterChain chain;
+    private KalmanFilter kalmanFilter;
+    private int index;
+
+    // recorded track shared with the core unit tests
+    @Setup
+    public void setup() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                LocationFilterBenchmark.class.getResourceAsStream("/track.csv"), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                String[] values = line.split(",");
+                Position position = new Position();
+                position.setTime(new Date(Long.parseLong(values[0])));
+                position.setLatitude(Double.parseDouble(values[1]));
+                position.setLongitude(Double.parseDouble(values[2]));
+                position.setSpeed(Double.parseDouble(values[3]) * 1.943844);
+                position.setCourse(Double.parseDouble(values[4]));
+                position.setAccuracy(Double.parseDouble(values[5]));
+                position.setGsm(0);
+                track.add(position);
+            }
+        } finally {
+            reader.close();
+        }
+        reset();
+    }
+
+    private void reset() {
+        chain = new LocationFilterChain()
+                .add(new LocationFilter.Duplicate())
+                .add(new LocationFilter.Accuracy(50))
+                .add(new LocationFilter.Speed(100))
+                .add(new LocationFilter.MinTime(300 * 1000))
+                .add(new LocationFilter.MinDistance(100))
+                .add(new LocationFilter.Heading(30));
+        kalmanFilter = new KalmanFilter();
+        index = 0;
+    }
+
+    private Position next() {
+        if (index == track.size()) {
+            reset();
+        }
+        return track.get(index++);
+    }
+
+    // one fix per operation
+    @Benchmark
+    public boolean filterChain() {
+        return chain.accept(next());
+    }
+
+    @Benchmark
+    public double kalmanFilter() {
+        Position position = next();
+        kalmanFilter.process(position.getTime().getTime(),
+                position.getLatitude(), position.getLongitude(), position.getAccuracy());
+        return kalmanFilter.getLatitude();
+    }
+
+}
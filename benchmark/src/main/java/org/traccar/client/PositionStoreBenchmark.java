@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionStoreBenchmark {
+
+    private static final int BATCH = 10;
+
+    private JdbcPositionStore store;
+    private final List<Position> positions = new ArrayList<>();
+    private Position position;
+    private Object[] row;
+
+    @Setup
+    public void setup() throws SQLException {
+        store = new JdbcPositionStore("jdbc:sqlite::memory:");
+        for (int i = 0; i < BATCH; i++) {
+            Position position = new Position();
+            position.setDeviceId("123456789012345");
+            position.setTime(new Date(1500000000000L + i * 1000));
+            position.setLatitude(52.520008 + i * 0.0001);
+            position.setLongitude(13.404954);
+            position.setGsm(0);
+            positions.add(position);
+        }
+        position = positions.get(0);
+        row = JdbcPositionStore.toRow(position);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        store.close();
+    }
+
+    @Benchmark
+    public Object[] serialize() {
+        return JdbcPositionStore.toRow(position);
+    }
+
+    @Benchmark
+    public Position deserialize() {
+        return JdbcPositionStore.fromRow(1, row);
+    }
+
+    // one batched insert of the write path followed by the read and delete of the upload path
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int insertDrain() throws SQLException {
+        store.insertPositions(positions);
+        int count = 0;
+        Position next;
+        while ((next = store.selectPosition()) != null) {
+            store.deletePosition(next.getId());
+            count += 1;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolFormatterBenchmark {
+
+    private String url = "http://demo.traccar.org:5055";
+    private Position position;
+
+    @Setup
+    public void setup() {
+        position = new Position();
+        position.setDeviceId("123456789012345");
+        position.setTime(new Date(1500000000000L));
+        position.setLatitude(52.520008);
+        position.setLongitude(13.404954);
+        position.setAltitude(34.5);
+        position.setSpeed(12.3);
+        position.setCourse(270.0);
+        position.setBattery(87.0);
+        position.setGsm(0);
+    }
+
+    @Benchmark
+    public String formatRequest() {
+        return ProtocolFormatter.formatRequest(url, position);
+    }
+
+    @Benchmark
+    public String formatAlarmRequest() {
+        return ProtocolFormatter.formatRequest(url, position, "sos alarm");
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayPipelineBenchmark {
+
+    private static final TrackingPipeline.Lock NO_LOCK = new TrackingPipeline.Lock() {
+        @Override
+        public void release() {
+        }
+    };
+
+    private static class Delegate implements TrackingPipeline.Delegate {
+
+        @Override
+        public TrackingPipeline.Lock acquireLock(String operation) {
+            return NO_LOCK;
+        }
+
+        @Override
+        public boolean isWindowForced() {
+            return false;
+        }
+
+        @Override
+        public void prepare(Position position, TrackingPipeline.PrepareHandler handler) {
+            handler.onComplete(TrackingPipeline.Preparation.SEND);
+        }
+
+        @Override
+        public void onSendResult(boolean success) {
+        }
+
+        @Override
+        public void onDelivered(long id) {
+        }
+
+        @Override
+        public void onDeleted(long id) {
+        }
+
+        @Override
+        public void onStallStart(long time) {
+        }
+
+        @Override
+        public void onStallEnd() {
+        }
+
+        @Override
+        public void onDropped(int count) {
+        }
+
+        @Override
+        public void onStatus() {
+        }
+
+        @Override
+        public void log(String message) {
+        }
+
+    }
+
+    private String track;
+
+    // recorded track shared with the core unit tests, kept in memory so file access is not measured
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                ReplayPipelineBenchmark.class.getResourceAsStream("/track.csv"), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                builder.append(line).append('\n');
+            }
+        } finally {
+            reader.close();
+        }
+        track = builder.toString();
+    }
+
+    // whole track as fast as possible through parsing, ingest, upload and delete
+    @Benchmark
+    public long replayTrack() {
+        final VirtualClock clock = new VirtualClock(1500000000000L);
+        final MemoryPositionStore store = new MemoryPositionStore(clock);
+        Transport transport = new Transport() {
+            @Override
+            public void send(String request, final Handler handler) {
+                clock.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        handler.onComplete(true);
+                    }
+                });
+            }
+        };
+
+        final TrackingPipeline pipeline = new TrackingPipeline(clock, store, transport, new Delegate());
+        pipeline.setUrl("http://localhost:5055");
+        pipeline.setDeviceId("123456789012345");
+        pipeline.setOnline(true);
+        pipeline.start();
+
+        ReplayLocationSource replay = new ReplayLocationSource(clock, new ReplayLocationSource.TrackOpener() {
+            @Override
+            public TrackReader open() {
+                return new TrackReader(new StringReader(track), TrackReader.FORMAT_CSV);
+            }
+        }, ReplayLocationSource.FASTEST, false, new ReplayLocationSource.Listener() {
+            @Override
+            public void onPositionUpdate(Position position) {
+                position.setDeviceId("123456789012345");
+                position.setGsm(0);
+                pipeline.onPositionUpdate(position);
+            }
+
+            @Override
+            public void onReplayEnd(IOException error) {
+            }
+        });
+        replay.startUpdates();
+        while (clock.runNext(clock.currentTime())) {
+        }
+        return pipeline.getMetrics().getUploaded();
+    }
+
+}
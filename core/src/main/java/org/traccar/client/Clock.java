@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+// time source and task scheduler of the thread that runs the tracking pipeline
+public interface Clock {
+
+    long currentTime();
+
+    // monotonic time in milliseconds, not affected by wall clock changes
+    long elapsedTime();
+
+    void post(Runnable task);
+
+    void postDelayed(Runnable task, long delay);
+
+    // like postDelayed, but also runs while the device sleeps
+    void postWakeup(Runnable task, long delay);
+
+    // cancels both delayed and wakeup tasks
+    void removeCallbacks(Runnable task);
+
+}
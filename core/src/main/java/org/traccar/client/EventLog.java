@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class EventLog {
+
+    public static final int MAX_FILE_SIZE = 256 * 1024;
+
+    public static class Event {
+
+        private final long sequence;
+        private final long time;
+        private final int code;
+        private final Object[] args;
+
+        public Event(long sequence, long time, int code, Object[] args) {
+            this.sequence = sequence;
+            this.time = time;
+            this.code = code;
+            this.args = args;
+        }
+
+        public long getSequence() { return sequence; }
+        public long getTime() { return time; }
+        public int getCode() { return code; }
+        public Object[] getArgs() { return args; }
+
+    }
+
+    public interface Listener {
+        void onEvent();
+    }
+
+    public interface Formatter {
+        String format(Event event);
+    }
+
+    private static final Executor executor = Executors.newSingleThreadExecutor();
+
+    private final AtomicReferenceArray<Event> events;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile long cleared;
+    private volatile Listener listener;
+    private volatile File file;
+    private volatile Formatter fileFormatter;
+
+    public EventLog(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        events = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // appending lines happens on a background thread, null disables the file
+    public void setFile(File file, Formatter formatter) {
+        this.fileFormatter = formatter;
+        this.file = file;
+    }
+
+    public void add(int code, Object... args) {
+        long index = sequence.getAndIncrement();
+        final Event event = new Event(index, System.currentTimeMillis(), code, args);
+        events.set((int) (index & mask), event);
+
+        Listener listener = this.listener;
+        if (listener != null) {
+            listener.onEvent();
+        }
+
+        final File file = this.file;
+        final Formatter formatter = fileFormatter;
+        if (file != null && formatter != null) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    write(file, formatter.format(event));
+                }
+            });
+        }
+    }
+
+    public List<Event> snapshot() {
+        long end = sequence.get();
+        long start = Math.max(Math.max(end - getCapacity(), cleared), 0);
+        List<Event> result = new ArrayList<>((int) (end - start));
+        for (long index = start; index < end; index++) {
+            Event event = events.get((int) (index & mask));
+            // slot may be overwritten by a newer event or not yet filled by a concurrent writer
+            if (event != null && event.getSequence() == index) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    public void clear() {
+        cleared = sequence.get();
+    }
+
+    private void write(File file, String line) {
+        if (file.length() > MAX_FILE_SIZE) {
+            File previous = new File(file.getPath() + ".1");
+            previous.delete();
+            file.renameTo(previous);
+        }
+        Writer writer = null;
+        try {
+            writer = new FileWriter(file, true);
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            // stop writing to a broken file rather than failing on every event
+            if (this.file == file) {
+                this.file = null;
+            }
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+}
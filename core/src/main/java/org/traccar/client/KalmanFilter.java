@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+public class KalmanFilter {
+
+    private static final double EARTH_RADIUS = 6378137.0; // meters
+    private static final double DEG_TO_RAD = Math.PI / 180;
+
+    private static final double DEFAULT_ACCELERATION = 0.5; // meters per second squared
+    private static final double MIN_ACCURACY = 1.0; // meters
+    private static final double INITIAL_VELOCITY_VARIANCE = 100.0;
+    private static final long RESET_TIMEOUT = 5 * 60 * 1000;
+
+    private final double accelerationVariance;
+
+    private boolean initialized;
+    private long time;
+    private double originLatitude;
+    private double originLongitude;
+    private double metersPerLongitude;
+
+    // state per axis, x is east and y is north
+    private double x, y, vx, vy;
+
+    // covariance is the same for both axes because they share process and measurement noise
+    private double p00, p01, p11;
+
+    public KalmanFilter() {
+        this(DEFAULT_ACCELERATION);
+    }
+
+    public KalmanFilter(double acceleration) {
+        accelerationVariance = acceleration * acceleration;
+    }
+
+    public void reset() {
+        initialized = false;
+    }
+
+    public void process(long time, double latitude, double longitude, double accuracy) {
+        double variance = Math.max(accuracy, MIN_ACCURACY);
+        variance *= variance;
+
+        long delta = time - this.time;
+        if (!initialized || delta <= 0 || delta > RESET_TIMEOUT) {
+            if (initialized && delta <= 0 && delta > -RESET_TIMEOUT) {
+                return; // stale fix, keep current estimate
+            }
+            initialize(time, latitude, longitude, variance);
+            return;
+        }
+        this.time = time;
+
+        double dt = delta / 1000.0;
+        x += vx * dt;
+        y += vy * dt;
+        double dt2 = dt * dt;
+        p00 += dt * (2 * p01 + dt * p11) + accelerationVariance * dt2 * dt2 / 4;
+        p01 += dt * p11 + accelerationVariance * dt2 * dt / 2;
+        p11 += accelerationVariance * dt2;
+
+        double s = p00 + variance;
+        double k0 = p00 / s;
+        double k1 = p01 / s;
+        double dx = toX(longitude) - x;
+        double dy = toY(latitude) - y;
+        x += k0 * dx;
+        y += k0 * dy;
+        vx += k1 * dx;
+        vy += k1 * dy;
+        p11 -= k1 * p01;
+        p00 *= 1 - k0;
+        p01 *= 1 - k0;
+    }
+
+    private void initialize(long time, double latitude, double longitude, double variance) {
+        initialized = true;
+        this.time = time;
+        originLatitude = latitude;
+        originLongitude = longitude;
+        metersPerLongitude = EARTH_RADIUS * DEG_TO_RAD * Math.cos(latitude * DEG_TO_RAD);
+        x = 0;
+        y = 0;
+        vx = 0;
+        vy = 0;
+        p00 = variance;
+        p01 = 0;
+        p11 = INITIAL_VELOCITY_VARIANCE;
+    }
+
+    private double toX(double longitude) {
+        return (longitude - originLongitude) * metersPerLongitude;
+    }
+
+    private double toY(double latitude) {
+        return (latitude - originLatitude) * EARTH_RADIUS * DEG_TO_RAD;
+    }
+
+    public double getLatitude() {
+        return originLatitude + y / (EARTH_RADIUS * DEG_TO_RAD);
+    }
+
+    public double getLongitude() {
+        return originLongitude + x / metersPerLongitude;
+    }
+
+    public double getSpeed() {
+        return Math.sqrt(vx * vx + vy * vy);
+    }
+
+    public double getBearing() {
+        double bearing = Math.atan2(vx, vy) / DEG_TO_RAD;
+        return bearing < 0 ? bearing + 360 : bearing;
+    }
+
+    public double getAccuracy() {
+        return Math.sqrt(p00);
+    }
+
+}
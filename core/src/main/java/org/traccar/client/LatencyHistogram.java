@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS = {
+            50, 100, 200, 300, 500, 750, 1000, 1500, 2000, 3000, 5000, 7500, 10000, 15000, 20000, 30000, 60000 };
+
+    private final int[] counts = new int[BOUNDS.length + 1];
+    private final int[] window;
+    private int next;
+    private int size;
+
+    public LatencyHistogram(int windowSize) {
+        window = new int[windowSize];
+    }
+
+    private static int bucket(long value) {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            if (value <= BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BOUNDS.length;
+    }
+
+    public void add(long value) {
+        if (size == window.length) {
+            counts[window[next]] -= 1;
+        } else {
+            size += 1;
+        }
+        int bucket = bucket(value);
+        window[next] = bucket;
+        counts[bucket] += 1;
+        next = (next + 1) % window.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // upper bound of the bucket holding the percentile, so the estimate errs on the slow side
+    public long percentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile * size);
+        int total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i];
+            if (total >= rank) {
+                return i < BOUNDS.length ? BOUNDS[i] : BOUNDS[BOUNDS.length - 1] * 2;
+            }
+        }
+        return BOUNDS[BOUNDS.length - 1] * 2;
+    }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+public abstract class LocationFilter {
+
+    public enum Result {
+        ACCEPT, // position is reported without consulting later stages
+        REJECT, // position is dropped without consulting later stages
+        PASS // no opinion, next stage decides
+    }
+
+    private long accepted;
+    private long rejected;
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public Result filter(Position last, Position position) {
+        Result result = check(last, position);
+        if (result == Result.ACCEPT) {
+            accepted += 1;
+        } else if (result == Result.REJECT) {
+            rejected += 1;
+        }
+        return result;
+    }
+
+    protected abstract Result check(Position last, Position position);
+
+    protected static boolean comparable(Position last, Position position) {
+        return last != null && last.getGsm() == 0 && position.getGsm() == 0;
+    }
+
+    public static double headingChange(double from, double to) {
+        double change = Math.abs(to - from) % 360;
+        return change > 180 ? 360 - change : change;
+    }
+
+    public static double distance(Position from, Position to) {
+        return DistanceCalculator.distance(
+                from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " accepted:" + accepted + " rejected:" + rejected;
+    }
+
+    public static class MinTime extends LocationFilter {
+
+        private final long interval;
+
+        public MinTime(long interval) {
+            this.interval = interval;
+        }
+
+        @Override
+        protected Result check(Position last, Position position) {
+            if (last != null && position.getTime().getTime() - last.getTime().getTime() >= interval) {
+                return Result.ACCEPT;
+            }
+            return Result.PASS;
+        }
+
+    }
+
+    public static class MinDistance extends LocationFilter {
+
+        private final double distance;
+
+        public MinDistance(double distance) {
+            this.distance = distance;
+        }
+
+        @Override
+        protected Result check(Position last, Position position) {
+            if (comparable(last, position) && distance(last, position) >= distance) {
+                return Result.ACCEPT;
+            }
+            return Result.PASS;
+        }
+
+    }
+
+    public static class Heading extends LocationFilter {
+
+        private final double angle;
+
+        public Heading(double angle) {
+            this.angle = angle;
+        }
+
+        @Override
+        protected Result check(Position last, Position position) {
+            if (comparable(last, position) && headingChange(last.getCourse(), position.getCourse()) >= angle) {
+                return Result.ACCEPT;
+            }
+            return Result.PASS;
+        }
+
+    }
+
+    public static class Accuracy extends LocationFilter {
+
+        private final double accuracy;
+
+        public Accuracy(double accuracy) {
+            this.accuracy = accuracy;
+        }
+
+        @Override
+        protected Result check(Position last, Position position) {
+            if (position.getGsm() == 0 && position.getAccuracy() > accuracy) {
+                return Result.REJECT;
+            }
+            return Result.PASS;
+        }
+
+    }
+
+    public static class Speed extends LocationFilter {
+
+        public static final int MAX_REJECTIONS = 3;
+
+        private final double speed;
+        private int rejections;
+
+        public Speed(double speed) {
+            this.speed = speed;
+        }
+
+        // the reference is the last accepted position, if that one was bad the track moves on after a few rejections
+        @Override
+        protected Result check(Position last, Position position) {
+            if (comparable(last, position)) {
+                long time = position.getTime().getTime() - last.getTime().getTime();
+                double distance = distance(last, position) - last.getAccuracy() - position.getAccuracy();
+                if (time > 0 && distance > 0 && distance * 1000 / time > speed && rejections < MAX_REJECTIONS) {
+                    rejections += 1;
+                    return Result.REJECT;
+                }
+            }
+            rejections = 0;
+            return Result.PASS;
+        }
+
+    }
+
+    public static class Duplicate extends LocationFilter {
+
+        private long previousTime = Long.MIN_VALUE;
+
+        @Override
+        protected Result check(Position last, Position position) {
+            long time = position.getTime().getTime();
+            boolean duplicate = time == previousTime || last != null && time == last.getTime().getTime();
+            previousTime = time;
+            return duplicate ? Result.REJECT : Result.PASS;
+        }
+
+    }
+
+}
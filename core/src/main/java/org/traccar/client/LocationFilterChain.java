@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LocationFilterChain {
+
+    private final List<LocationFilter> filters = new ArrayList<>();
+
+    private Position lastPosition;
+    private long accepted;
+    private long rejected;
+
+    public LocationFilterChain add(LocationFilter filter) {
+        filters.add(filter);
+        return this;
+    }
+
+    public List<LocationFilter> getFilters() {
+        return filters;
+    }
+
+    public Position getLastPosition() {
+        return lastPosition;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public boolean accept(Position position) {
+        boolean result = lastPosition == null;
+        for (LocationFilter filter : filters) {
+            LocationFilter.Result filterResult = filter.filter(lastPosition, position);
+            if (filterResult != LocationFilter.Result.PASS) {
+                result = filterResult == LocationFilter.Result.ACCEPT;
+                break;
+            }
+        }
+        if (result) {
+            accepted += 1;
+            lastPosition = position;
+        } else {
+            rejected += 1;
+        }
+        return result;
+    }
+
+    public void force(Position position) {
+        accepted += 1;
+        lastPosition = position;
+    }
+
+    public void reset() {
+        lastPosition = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("accepted:").append(accepted).append(" rejected:").append(rejected);
+        for (LocationFilter filter : filters) {
+            builder.append(", ").append(filter);
+        }
+        return builder.toString();
+    }
+
+}
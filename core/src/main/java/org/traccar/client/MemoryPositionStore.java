@@ -0,0 +1,138 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+// in-memory store for simulations and tests, rows are copied like a database would
+public class MemoryPositionStore implements PositionStore {
+
+    private final Clock clock;
+    private final TreeMap<Long, Position> rows = new TreeMap<>();
+    private long nextId = 1;
+
+    public MemoryPositionStore(Clock clock) {
+        this.clock = clock;
+    }
+
+    private static Position copy(Position position) {
+        Position copy = new Position();
+        copy.setId(position.getId());
+        copy.setDeviceId(position.getDeviceId());
+        copy.setTime(position.getTime());
+        copy.setLatitude(position.getLatitude());
+        copy.setLongitude(position.getLongitude());
+        copy.setAltitude(position.getAltitude());
+        copy.setSpeed(position.getSpeed());
+        copy.setCourse(position.getCourse());
+        copy.setBattery(position.getBattery());
+        copy.setGsm(position.getGsm());
+        return copy;
+    }
+
+    public List<Position> getPositions() {
+        return new ArrayList<>(rows.values());
+    }
+
+    public void insertPositions(List<Position> positions) {
+        for (Position position : positions) {
+            position.setId(nextId++);
+            rows.put(position.getId(), copy(position));
+        }
+    }
+
+    public Position selectPosition(Collection<Long> exclude) {
+        for (Position position : rows.values()) {
+            if (!exclude.contains(position.getId())) {
+                return copy(position);
+            }
+        }
+        return null;
+    }
+
+    public List<Position> selectPositions(long fromId, int limit) {
+        List<Position> positions = new ArrayList<>();
+        for (Position position : rows.tailMap(fromId).values()) {
+            if (positions.size() == limit) {
+                break;
+            }
+            positions.add(copy(position));
+        }
+        return positions;
+    }
+
+    public long countPositions() {
+        return rows.size();
+    }
+
+    public boolean deletePosition(long id) {
+        return rows.remove(id) != null;
+    }
+
+    public int deletePositions(Collection<Long> ids) {
+        int count = 0;
+        for (long id : ids) {
+            if (rows.remove(id) != null) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    private <T> void complete(final Handler<T> handler, final boolean success, final T result) {
+        clock.post(new Runnable() {
+            @Override
+            public void run() {
+                handler.onComplete(success, result);
+            }
+        });
+    }
+
+    @Override
+    public void insertPositionsAsync(List<Position> positions, Handler<Void> handler) {
+        insertPositions(positions);
+        complete(handler, true, null);
+    }
+
+    @Override
+    public void selectPositionAsync(Collection<Long> exclude, Handler<Position> handler) {
+        complete(handler, true, selectPosition(exclude));
+    }
+
+    @Override
+    public void selectPositionsAsync(long fromId, int limit, Handler<List<Position>> handler) {
+        complete(handler, true, selectPositions(fromId, limit));
+    }
+
+    @Override
+    public void countPositionsAsync(Handler<Long> handler) {
+        complete(handler, true, countPositions());
+    }
+
+    @Override
+    public void deletePositionAsync(long id, Handler<Void> handler) {
+        complete(handler, deletePosition(id), null);
+    }
+
+    @Override
+    public void deletePositionsAsync(Collection<Long> ids, Handler<Integer> handler) {
+        complete(handler, true, deletePositions(ids));
+    }
+
+}
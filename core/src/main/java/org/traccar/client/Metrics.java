@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class Metrics {
+
+    public static final long[] TIME_BUCKETS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000, 300000, 1800000 };
+
+    public static final long[] COUNT_BUCKETS = {
+            0, 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    public static final long[] DISTANCE_BUCKETS = {
+            5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000 };
+
+    private static final ConcurrentMap<String, Metric> registry = new ConcurrentHashMap<>();
+
+    private static final long startTime = System.currentTimeMillis();
+
+    private Metrics() {
+    }
+
+    private interface Metric {
+        String format();
+    }
+
+    public static final class Counter implements Metric {
+
+        private final AtomicLong value = new AtomicLong();
+
+        public void inc() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        @Override
+        public String format() {
+            return String.valueOf(value.get());
+        }
+    }
+
+    public static final class Gauge implements Metric {
+
+        private final AtomicLong value = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void set(long value) {
+            this.value.set(value);
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        @Override
+        public String format() {
+            return value.get() + " (max " + max.get() + ")";
+        }
+    }
+
+    public static final class Histogram implements Metric {
+
+        private final long[] bounds;
+        private final AtomicLongArray counts;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+
+        private Histogram(long[] bounds) {
+            this.bounds = bounds;
+            counts = new AtomicLongArray(bounds.length + 1);
+        }
+
+        public void record(long value) {
+            int bucket = bounds.length;
+            for (int i = 0; i < bounds.length; i++) {
+                if (value <= bounds[i]) {
+                    bucket = i;
+                    break;
+                }
+            }
+            counts.incrementAndGet(bucket);
+            count.incrementAndGet();
+            sum.addAndGet(value);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        // upper bound of the bucket, overflow is reported as the last bound
+        public long percentile(double percentile) {
+            long total = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                total += counts.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return bounds[Math.min(i, bounds.length - 1)];
+                }
+            }
+            return bounds[bounds.length - 1];
+        }
+
+        @Override
+        public String format() {
+            long n = count.get();
+            return String.format(Locale.US, "n %d avg %d p50 %d p95 %d p99 %d",
+                    n, n > 0 ? sum.get() / n : 0, percentile(0.5), percentile(0.95), percentile(0.99));
+        }
+    }
+
+    public static final class Label implements Metric {
+
+        private final AtomicReference<String> value = new AtomicReference<>("");
+
+        public void set(String value) {
+            this.value.set(value);
+        }
+
+        public String get() {
+            return value.get();
+        }
+
+        @Override
+        public String format() {
+            return value.get();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Metric> T register(String name, T metric) {
+        Metric existing = registry.putIfAbsent(name, metric);
+        return existing != null ? (T) existing : metric;
+    }
+
+    public static Counter counter(String name) {
+        return register(name, new Counter());
+    }
+
+    public static Gauge gauge(String name) {
+        return register(name, new Gauge());
+    }
+
+    public static Histogram histogram(String name, long[] bounds) {
+        return register(name, new Histogram(bounds));
+    }
+
+    public static Label label(String name) {
+        return register(name, new Label());
+    }
+
+    public static long getUptime() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    public static Map<String, String> snapshot() {
+        Map<String, String> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Metric> entry : registry.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().format());
+        }
+        return snapshot;
+    }
+
+    public static List<String> format() {
+        List<String> lines = new ArrayList<>();
+        lines.add("uptime " + getUptime() / 1000 + " s");
+        for (Map.Entry<String, String> entry : snapshot().entrySet()) {
+            lines.add(entry.getKey() + " " + entry.getValue());
+        }
+        return lines;
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.Locale;
+
+public class PipelineMetrics {
+
+    private static final long RADIO_TAIL = 15 * 1000;
+
+    private long queueDepth;
+    private long maxQueueDepth;
+
+    private long ingested;
+    private long dropped;
+    private long ingestTime;
+    private long maxIngestTime;
+
+    private long uploaded;
+    private long uploadTime;
+    private long maxUploadTime;
+
+    private long sent;
+    private long sendTime;
+
+    private long stallTime;
+    private long stallStart = -1;
+
+    private long startTime = System.currentTimeMillis();
+    private long firstFix = -1;
+    private long firstUpload = -1;
+    private long radioWakeups;
+    private long lastRadioActivity = -1;
+    private long flushes;
+
+    private long reconfigurations;
+    private long reconfigureTime;
+    private long maxReconfigureTime;
+
+    private long compactions;
+    private long compacted;
+    private long compactionTime;
+
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getIngested() {
+        return ingested;
+    }
+
+    public long getDropped() {
+        return dropped;
+    }
+
+    public long getUploaded() {
+        return uploaded;
+    }
+
+    public void setQueueDepth(long queueDepth) {
+        this.queueDepth = queueDepth;
+        maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+    }
+
+    public void onIngest(int count, long time) {
+        ingested += count;
+        ingestTime += time;
+        maxIngestTime = Math.max(maxIngestTime, time);
+        setQueueDepth(queueDepth + count);
+    }
+
+    public void onDrop() {
+        dropped += 1;
+    }
+
+    public void onUpload(long time) {
+        uploaded += 1;
+        uploadTime += time;
+        maxUploadTime = Math.max(maxUploadTime, time);
+        setQueueDepth(Math.max(0, queueDepth - 1));
+    }
+
+    public void onDirectUpload(long time) {
+        sent += 1;
+        sendTime += time;
+    }
+
+    public long getDirectUploads() {
+        return sent;
+    }
+
+    public double getWritesPerDelivery() {
+        long delivered = uploaded + sent;
+        return delivered > 0 ? (ingested + uploaded) / (double) delivered : 0;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public void onFix(long now, long fixTime) {
+        if (firstFix < 0 && fixTime >= startTime) {
+            firstFix = now - startTime;
+        }
+    }
+
+    public void onDelivery(long now) {
+        if (firstUpload < 0) {
+            firstUpload = now - startTime;
+        }
+    }
+
+    public long getFirstFix() {
+        return firstFix;
+    }
+
+    public long getFirstUpload() {
+        return firstUpload;
+    }
+
+    public void onRadioActivity(long now) {
+        if (lastRadioActivity < 0 || now - lastRadioActivity > RADIO_TAIL) {
+            radioWakeups += 1;
+        }
+        lastRadioActivity = now;
+    }
+
+    public long getRadioWakeups() {
+        return radioWakeups;
+    }
+
+    public double getRadioWakeupsPerHour(long now) {
+        long elapsed = now - startTime;
+        return elapsed > 0 ? radioWakeups * 3600000.0 / elapsed : 0;
+    }
+
+    public void onFlush() {
+        flushes += 1;
+    }
+
+    public void onReconfigure(long nanos) {
+        reconfigurations += 1;
+        reconfigureTime += nanos;
+        maxReconfigureTime = Math.max(maxReconfigureTime, nanos);
+    }
+
+    public void onCompact(int count) {
+        compacted += count;
+        setQueueDepth(Math.max(0, queueDepth - count));
+    }
+
+    public void onCompaction(long time) {
+        compactions += 1;
+        compactionTime += time;
+    }
+
+    public long getCompacted() {
+        return compacted;
+    }
+
+    public void onDiscard() {
+        setQueueDepth(Math.max(0, queueDepth - 1));
+    }
+
+    public void startStall(long now) {
+        if (stallStart < 0) {
+            stallStart = now;
+        }
+    }
+
+    public void endStall(long now) {
+        if (stallStart >= 0) {
+            stallTime += now - stallStart;
+            stallStart = -1;
+        }
+    }
+
+    public long getStallTime(long now) {
+        return stallStart >= 0 ? stallTime + now - stallStart : stallTime;
+    }
+
+    public String format(long now) {
+        return String.format(Locale.US,
+                "queue %d (max %d), ingest %d avg %d ms max %d ms, upload %d avg %d ms max %d ms, "
+                        + "direct %d avg %d ms, db writes per fix %.2f, stall %d s, dropped %d, "
+                        + "flushes %d, radio wakeups %d (%.1f/h), first fix %d ms, first upload %d ms, "
+                        + "reconfigure %d avg %d us max %d us, compactions %d removed %d avg %d ms",
+                queueDepth, maxQueueDepth,
+                ingested, ingested > 0 ? ingestTime / ingested : 0, maxIngestTime,
+                uploaded, uploaded > 0 ? uploadTime / uploaded : 0, maxUploadTime,
+                sent, sent > 0 ? sendTime / sent : 0, getWritesPerDelivery(),
+                getStallTime(now) / 1000, dropped,
+                flushes, radioWakeups, getRadioWakeupsPerHour(now), firstFix, firstUpload,
+                reconfigurations, reconfigurations > 0 ? reconfigureTime / reconfigurations / 1000 : 0,
+                maxReconfigureTime / 1000,
+                compactions, compacted, compactions > 0 ? compactionTime / compactions : 0);
+    }
+
+}
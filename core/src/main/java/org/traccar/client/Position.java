@@ -15,9 +15,6 @@
  */
 package org.traccar.client;
 
-import android.location.Location;
-import android.os.Bundle;
-
 import java.util.Date;
 
 public class Position {
@@ -25,26 +22,6 @@ public class Position {
     public Position() {
     }
 
-    public Position(String deviceId, Location location, double battery) {
-
-        Bundle gsmE = location.getExtras();
-        this.deviceId = deviceId;
-        time = new Date(location.getTime());
-        latitude = location.getLatitude();
-        longitude = location.getLongitude();
-        altitude = location.getAltitude();
-        speed = location.getSpeed() * 1.943844; // speed in knots
-        course = location.getBearing();
-        this.battery = battery;
-
-        if(gsmE != null){
-            gsm = gsmE.getInt("gsm", 0);
-        } else {
-            gsm = 0;
-        }
-
-    }
-
     private long id;
     public long getId() { return id; }
     public void setId(long id) { this.id = id; }
@@ -77,6 +54,10 @@ public class Position {
     public double getCourse() { return course; }
     public void setCourse(double course) { this.course = course; }
 
+    private double accuracy;
+    public double getAccuracy() { return accuracy; }
+    public void setAccuracy(double accuracy) { this.accuracy = accuracy; }
+
     private double battery;
     public double getBattery() { return battery; }
     public void setBattery(double battery) { this.battery = battery; }
@@ -85,4 +66,12 @@ public class Position {
     public Integer getGsm() { return gsm; }
     public void setGsm(Integer gsm) { this.gsm = gsm; }
 
+    private boolean priority;
+    public boolean getPriority() { return priority; }
+    public void setPriority(boolean priority) { this.priority = priority; }
+
+    private PositionTrace trace;
+    public PositionTrace getTrace() { return trace; }
+    public void setTrace(PositionTrace trace) { this.trace = trace; }
+
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+public class PositionBuffer {
+
+    private final Position[] positions;
+    private final long[] times;
+    private int head;
+    private int size;
+
+    public PositionBuffer(int capacity) {
+        positions = new Position[capacity];
+        times = new long[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return size == positions.length;
+    }
+
+    public void add(Position position, long time) {
+        if (isFull()) {
+            throw new IllegalStateException("Buffer is full");
+        }
+        int tail = (head + size) % positions.length;
+        positions[tail] = position;
+        times[tail] = time;
+        size += 1;
+    }
+
+    public long peekTime() {
+        if (size == 0) {
+            throw new IllegalStateException("Buffer is empty");
+        }
+        return times[head];
+    }
+
+    public Position poll() {
+        if (size == 0) {
+            return null;
+        }
+        Position position = positions[head];
+        positions[head] = null;
+        head = (head + 1) % positions.length;
+        size -= 1;
+        return position;
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.Collection;
+import java.util.List;
+
+// handlers are called on the pipeline thread after the method returns
+public interface PositionStore {
+
+    interface Handler<T> {
+        void onComplete(boolean success, T result);
+    }
+
+    void insertPositionsAsync(List<Position> positions, Handler<Void> handler);
+
+    void selectPositionAsync(Collection<Long> exclude, Handler<Position> handler);
+
+    // rows with id from the given one onwards, ordered by id
+    void selectPositionsAsync(long fromId, int limit, Handler<List<Position>> handler);
+
+    void countPositionsAsync(Handler<Long> handler);
+
+    void deletePositionAsync(long id, Handler<Void> handler);
+
+    void deletePositionsAsync(Collection<Long> ids, Handler<Integer> handler);
+
+}
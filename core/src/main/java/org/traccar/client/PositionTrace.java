@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+public class PositionTrace {
+
+    public static final int FIX = 0;
+    public static final int RECEIVE = 1;
+    public static final int ACCEPT = 2;
+    public static final int WRITE = 3;
+    public static final int READ = 4;
+    public static final int RESOLVE = 5;
+    public static final int SEND = 6;
+    public static final int ACK = 7;
+    public static final int DELETE = 8;
+
+    private static final String[] NAMES = {
+            "fix", "receive", "accept", "write", "read", "resolve", "send", "ack", "delete" };
+
+    // per stage latency, measured from the closest earlier stage that was reached
+    private static final Metrics.Histogram[] latencies = new Metrics.Histogram[NAMES.length];
+    private static final Metrics.Histogram totalLatency = Metrics.histogram("trace.total", Metrics.TIME_BUCKETS);
+
+    static {
+        for (int i = 1; i < NAMES.length; i++) {
+            latencies[i] = Metrics.histogram("trace." + NAMES[i], Metrics.TIME_BUCKETS);
+        }
+    }
+
+    // monotonic timestamps in milliseconds, zero when the stage was not reached
+    private final long[] stages = new long[NAMES.length];
+    private boolean sampled;
+
+    public void mark(int stage, long time) {
+        stages[stage] = time;
+        for (int i = stage - 1; i >= 0; i--) {
+            if (stages[i] != 0) {
+                latencies[stage].record(Math.max(time - stages[i], 0));
+                break;
+            }
+        }
+        if (stage == ACK && stages[FIX] != 0) {
+            totalLatency.record(Math.max(time - stages[FIX], 0));
+        }
+    }
+
+    public long get(int stage) {
+        return stages[stage];
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    public void setSampled(boolean sampled) {
+        this.sampled = sampled;
+    }
+
+    // stage offsets relative to the first recorded stage, for example "fix:0,receive:850,accept:851"
+    public String format() {
+        long origin = 0;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < stages.length; i++) {
+            if (stages[i] != 0) {
+                if (origin == 0) {
+                    origin = stages[i];
+                } else {
+                    builder.append(',');
+                }
+                builder.append(NAMES[i]).append(':').append(stages[i] - origin);
+            }
+        }
+        return builder.toString();
+    }
+
+}
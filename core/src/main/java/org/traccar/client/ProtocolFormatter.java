@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012 - 2016 Anton Tananaev (anton.tananaev@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.io.UnsupportedEncodingException;
+
+public class ProtocolFormatter {
+
+    private static final String UNRESERVED = "_-!.~'()*";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    // same escaping as android.net.Uri.encode, so requests stay byte for byte identical
+    public static String encode(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        byte[] bytes;
+        try {
+            bytes = value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+        for (byte b : bytes) {
+            char c = (char) (b & 0xff);
+            if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || UNRESERVED.indexOf(c) >= 0) {
+                builder.append(c);
+            } else {
+                builder.append('%').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static class QueryBuilder {
+
+        private final StringBuilder builder;
+        private final String fragment;
+        private boolean hasQuery;
+
+        public QueryBuilder(String url) {
+            int fragmentIndex = url.indexOf('#');
+            if (fragmentIndex >= 0) {
+                fragment = url.substring(fragmentIndex);
+                url = url.substring(0, fragmentIndex);
+            } else {
+                fragment = null;
+            }
+            builder = new StringBuilder(url);
+            int queryIndex = url.indexOf('?');
+            hasQuery = queryIndex >= 0 && queryIndex < url.length() - 1;
+            if (queryIndex == url.length() - 1) {
+                builder.setLength(queryIndex);
+            }
+        }
+
+        public QueryBuilder appendQueryParameter(String key, String value) {
+            builder.append(hasQuery ? '&' : '?').append(encode(key)).append('=').append(encode(value));
+            hasQuery = true;
+            return this;
+        }
+
+        public String build() {
+            if (fragment != null) {
+                builder.append(fragment);
+            }
+            return builder.toString();
+        }
+
+    }
+
+    public static String formatRequest(String url, Position position) {
+        return formatRequest(url, position, null);
+    }
+
+    public static String formatRequest(String url, Position position, String alarm) {
+        QueryBuilder builder = new QueryBuilder(url)
+                .appendQueryParameter("id", position.getDeviceId())
+                .appendQueryParameter("timestamp", String.valueOf(position.getTime().getTime() / 1000))
+                .appendQueryParameter("lat", String.valueOf(position.getLatitude()))
+                .appendQueryParameter("lon", String.valueOf(position.getLongitude()))
+                .appendQueryParameter("speed", String.valueOf(position.getSpeed()))
+                .appendQueryParameter("bearing", String.valueOf(position.getCourse()))
+                .appendQueryParameter("altitude", String.valueOf(position.getAltitude()))
+                .appendQueryParameter("batt", String.valueOf(position.getBattery()));
+
+        if (alarm != null) {
+            builder.appendQueryParameter("alarm", alarm);
+        }
+
+        if (position.getTrace() != null && position.getTrace().isSampled()) {
+            builder.appendQueryParameter("trace", position.getTrace().format());
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.Locale;
+
+public class ProviderScore {
+
+    private static final double SMOOTHING = 0.3;
+    private static final double DRIFT_SPEED = 10.0; // meters per second a delayed fix may be off by
+
+    private final String name;
+
+    private long fixes;
+    private long superseded;
+    private double accuracy;
+    private double latency;
+    private long firstTime;
+    private long lastTime;
+
+    public ProviderScore(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getFixes() {
+        return fixes;
+    }
+
+    public long getSuperseded() {
+        return superseded;
+    }
+
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    public double getLatency() {
+        return latency;
+    }
+
+    public void onFix(long now, long fixTime, double accuracy) {
+        long latency = Math.max(0, now - fixTime);
+        if (fixes == 0) {
+            firstTime = now;
+            this.accuracy = accuracy;
+            this.latency = latency;
+        } else {
+            this.accuracy = SMOOTHING * accuracy + (1 - SMOOTHING) * this.accuracy;
+            this.latency = SMOOTHING * latency + (1 - SMOOTHING) * this.latency;
+        }
+        fixes += 1;
+        lastTime = now;
+    }
+
+    public void onSuperseded() {
+        superseded += 1;
+    }
+
+    public boolean isAvailable(long now, long timeout) {
+        return fixes > 0 && now - lastTime <= timeout;
+    }
+
+    public double getScore() {
+        return accuracy + latency / 1000 * DRIFT_SPEED;
+    }
+
+    public double getAvailability(long now, long interval) {
+        if (fixes == 0) {
+            return 0;
+        }
+        double expected = Math.max(1, (now - firstTime) / (double) interval + 1);
+        return Math.min(1, fixes / expected);
+    }
+
+    public String format(long now, long interval) {
+        return String.format(Locale.US, "%s: %d fixes, %d superseded, %.0f m, %.1f s, %.0f%%",
+                name, fixes, superseded, accuracy, latency / 1000, getAvailability(now, interval) * 100);
+    }
+
+}
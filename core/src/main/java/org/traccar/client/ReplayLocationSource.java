@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.io.IOException;
+import java.util.Date;
+
+// plays a recorded track on a clock, fixes are stamped with clock time so they look live downstream
+public class ReplayLocationSource implements LocationSource {
+
+    public static final double FASTEST = 0;
+
+    public interface TrackOpener {
+        TrackReader open() throws IOException;
+    }
+
+    public interface Listener extends LocationSource.Listener {
+        // error is null when the track ended normally
+        void onReplayEnd(IOException error);
+    }
+
+    private final Clock clock;
+    private final TrackOpener opener;
+    private final double speed;
+    private final boolean loop;
+    private final Listener listener;
+
+    private TrackReader reader;
+    private Position next;
+    private boolean isRunning;
+
+    // speed multiplies recorded pace, FASTEST posts every fix as soon as the previous one is handled
+    public ReplayLocationSource(Clock clock, TrackOpener opener, double speed, boolean loop, Listener listener) {
+        this.clock = clock;
+        this.opener = opener;
+        this.speed = speed;
+        this.loop = loop;
+        this.listener = listener;
+    }
+
+    private Position readNext() throws IOException {
+        Position position = reader.read();
+        if (position == null && loop) {
+            reader.close();
+            reader = opener.open();
+            position = reader.read();
+        }
+        return position;
+    }
+
+    private void finish(IOException error) {
+        isRunning = false;
+        next = null;
+        close();
+        listener.onReplayEnd(error);
+    }
+
+    private final Runnable replayTask = new Runnable() {
+        @Override
+        public void run() {
+            Position position = next;
+            long trackTime = position.getTime().getTime();
+            position.setTime(new Date(clock.currentTime()));
+            listener.onPositionUpdate(position);
+            if (reader == null) {
+                return;
+            }
+            try {
+                next = readNext();
+            } catch (IOException e) {
+                finish(e);
+                return;
+            }
+            if (next == null) {
+                finish(null);
+            } else if (isRunning) {
+                long delay = speed > 0 ? (long) ((next.getTime().getTime() - trackTime) / speed) : 0;
+                clock.postDelayed(this, Math.max(delay, 0));
+            }
+        }
+    };
+
+    // resumes where the last stop left off, the track is opened on first start
+    @Override
+    public void startUpdates() {
+        if (isRunning) {
+            return;
+        }
+        try {
+            if (reader == null) {
+                reader = opener.open();
+                next = reader.read();
+            }
+        } catch (IOException e) {
+            finish(e);
+            return;
+        }
+        if (next == null) {
+            finish(null);
+            return;
+        }
+        isRunning = true;
+        clock.post(replayTask);
+    }
+
+    @Override
+    public void stopUpdates() {
+        isRunning = false;
+        clock.removeCallbacks(replayTask);
+    }
+
+    public void close() {
+        stopUpdates();
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // nothing left to read
+            }
+            reader = null;
+        }
+    }
+
+}
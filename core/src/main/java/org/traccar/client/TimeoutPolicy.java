@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class TimeoutPolicy {
+
+    private static final int WINDOW_SIZE = 100;
+    private static final int MIN_SAMPLES = 5;
+    private static final double PERCENTILE = 0.95;
+    private static final int MULTIPLIER = 2;
+
+    public static final int DEFAULT_FLOOR = 2 * 1000;
+    public static final int DEFAULT_CEILING = 30 * 1000;
+
+    private static class Latency {
+        private final LatencyHistogram connect = new LatencyHistogram(WINDOW_SIZE);
+        private final LatencyHistogram read = new LatencyHistogram(WINDOW_SIZE);
+    }
+
+    private final Map<String, Latency> latencies = new HashMap<>();
+    private String networkType = "none";
+    private int floor = DEFAULT_FLOOR;
+    private int ceiling = DEFAULT_CEILING;
+
+    private long connections;
+    private long connectTimeouts;
+    private long readTimeouts;
+    private long failures;
+
+    public synchronized void setNetworkType(String networkType) {
+        this.networkType = networkType;
+    }
+
+    public synchronized void setBounds(int floor, int ceiling) {
+        this.floor = floor;
+        this.ceiling = Math.max(floor, ceiling);
+    }
+
+    private Latency getLatency() {
+        Latency latency = latencies.get(networkType);
+        if (latency == null) {
+            latency = new Latency();
+            latencies.put(networkType, latency);
+        }
+        return latency;
+    }
+
+    private int getTimeout(LatencyHistogram histogram) {
+        if (histogram.size() < MIN_SAMPLES) {
+            return ceiling;
+        }
+        long timeout = histogram.percentile(PERCENTILE) * MULTIPLIER;
+        return (int) Math.min(Math.max(timeout, floor), ceiling);
+    }
+
+    public synchronized int getConnectTimeout() {
+        return getTimeout(getLatency().connect);
+    }
+
+    public synchronized int getReadTimeout() {
+        return getTimeout(getLatency().read);
+    }
+
+    public synchronized void onConnect(long time) {
+        connections += 1;
+        getLatency().connect.add(time);
+    }
+
+    public synchronized void onRead(long time) {
+        getLatency().read.add(time);
+    }
+
+    // a timeout is recorded as a sample at the limit that was hit, which pushes the next limit up
+    public synchronized void onConnectTimeout(long timeout) {
+        connections += 1;
+        connectTimeouts += 1;
+        getLatency().connect.add(timeout);
+    }
+
+    public synchronized void onReadTimeout(long timeout) {
+        readTimeouts += 1;
+        getLatency().read.add(timeout);
+    }
+
+    public synchronized void onFailure() {
+        failures += 1;
+    }
+
+    public synchronized long getConnectTimeouts() {
+        return connectTimeouts;
+    }
+
+    public synchronized long getReadTimeouts() {
+        return readTimeouts;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized String format() {
+        return String.format(Locale.US,
+                "%s, connections %d, timeouts %d connect %d read, failures %d, limits %d ms connect %d ms read",
+                networkType, connections, connectTimeouts, readTimeouts, failures,
+                getConnectTimeout(), getReadTimeout());
+    }
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// streams a recorded track one record at a time, speed is returned in knots like live positions
+public class TrackReader implements Closeable {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_GPX = "gpx";
+    public static final String FORMAT_NMEA = "nmea";
+
+    private static final double KNOTS_PER_MPS = 1.943844;
+    private static final double HDOP_ERROR = 5.0; // meters of horizontal error per unit of HDOP
+
+    private static final Pattern LATITUDE = Pattern.compile("\\slat\\s*=\\s*[\"']([^\"']*)[\"']");
+    private static final Pattern LONGITUDE = Pattern.compile("\\slon\\s*=\\s*[\"']([^\"']*)[\"']");
+
+    private final BufferedReader reader;
+    private final String format;
+
+    private final StringBuilder text = new StringBuilder();
+
+    private String ggaTime;
+    private double ggaAltitude;
+    private double ggaAccuracy;
+
+    public TrackReader(Reader reader, String format) {
+        this.reader = new BufferedReader(reader);
+        this.format = format;
+    }
+
+    public static String getFormat(String name) {
+        String lowerName = name.toLowerCase(Locale.US);
+        if (lowerName.endsWith(".gpx")) {
+            return FORMAT_GPX;
+        } else if (lowerName.endsWith(".nmea") || lowerName.endsWith(".nma") || lowerName.endsWith(".log")) {
+            return FORMAT_NMEA;
+        } else {
+            return FORMAT_CSV;
+        }
+    }
+
+    // returns null at the end of the track, records without a valid fix are skipped
+    public Position read() throws IOException {
+        switch (format) {
+            case FORMAT_GPX:
+                return readGpx();
+            case FORMAT_NMEA:
+                return readNmea();
+            default:
+                return readCsv();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // time,latitude,longitude,speed,course,accuracy with time in milliseconds and speed in meters per second
+    private Position readCsv() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] values = line.split(",");
+            if (values.length < 3) {
+                continue;
+            }
+            try {
+                Position position = new Position();
+                position.setTime(new Date(Long.parseLong(values[0])));
+                position.setLatitude(Double.parseDouble(values[1]));
+                position.setLongitude(Double.parseDouble(values[2]));
+                if (values.length > 3) {
+                    position.setSpeed(Double.parseDouble(values[3]) * KNOTS_PER_MPS);
+                }
+                if (values.length > 4) {
+                    position.setCourse(Double.parseDouble(values[4]));
+                }
+                if (values.length > 5) {
+                    position.setAccuracy(Double.parseDouble(values[5]));
+                }
+                return position;
+            } catch (NumberFormatException e) {
+                continue;
+            }
+        }
+        return null;
+    }
+
+    private static boolean checkNmea(String line) {
+        int end = line.indexOf('*');
+        if (end < 0) {
+            return true;
+        }
+        int checksum = 0;
+        for (int i = 1; i < end; i++) {
+            checksum ^= line.charAt(i);
+        }
+        try {
+            return checksum == Integer.parseInt(line.substring(end + 1).trim(), 16);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // ddmm.mmmm or dddmm.mmmm with hemisphere
+    private static double parseCoordinate(String value, String hemisphere) {
+        double raw = Double.parseDouble(value);
+        int degrees = (int) (raw / 100);
+        double coordinate = degrees + (raw - degrees * 100) / 60;
+        return hemisphere.equals("S") || hemisphere.equals("W") ? -coordinate : coordinate;
+    }
+
+    private static Date parseNmeaTime(String date, String time) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        int year = Integer.parseInt(date.substring(4, 6));
+        calendar.set(year < 80 ? 2000 + year : 1900 + year,
+                Integer.parseInt(date.substring(2, 4)) - 1, Integer.parseInt(date.substring(0, 2)),
+                Integer.parseInt(time.substring(0, 2)), Integer.parseInt(time.substring(2, 4)),
+                Integer.parseInt(time.substring(4, 6)));
+        long millis = time.length() > 7 ? Math.round(Double.parseDouble(time.substring(6)) * 1000) : 0;
+        return new Date(calendar.getTimeInMillis() + millis);
+    }
+
+    // a fix per RMC sentence, altitude and HDOP come from the GGA sentence of the same second
+    private Position readNmea() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (!line.startsWith("$") || line.length() < 7 || !checkNmea(line)) {
+                continue;
+            }
+            int end = line.indexOf('*');
+            String[] values = line.substring(1, end >= 0 ? end : line.length()).split(",", -1);
+            String type = values[0].length() == 5 ? values[0].substring(2) : "";
+            try {
+                if (type.equals("GGA") && values.length > 9 && !values[6].equals("0")) {
+                    ggaTime = values[1];
+                    ggaAccuracy = values[8].isEmpty() ? 0 : Double.parseDouble(values[8]) * HDOP_ERROR;
+                    ggaAltitude = values[9].isEmpty() ? 0 : Double.parseDouble(values[9]);
+                } else if (type.equals("RMC") && values.length > 9 && values[2].equals("A")) {
+                    Position position = new Position();
+                    position.setTime(parseNmeaTime(values[9], values[1]));
+                    position.setLatitude(parseCoordinate(values[3], values[4]));
+                    position.setLongitude(parseCoordinate(values[5], values[6]));
+                    position.setSpeed(values[7].isEmpty() ? 0 : Double.parseDouble(values[7]));
+                    position.setCourse(values[8].isEmpty() ? 0 : Double.parseDouble(values[8]));
+                    if (values[1].equals(ggaTime)) {
+                        position.setAltitude(ggaAltitude);
+                        position.setAccuracy(ggaAccuracy);
+                    }
+                    return position;
+                }
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                continue;
+            }
+        }
+        return null;
+    }
+
+    // next tag without angle brackets, text in front of it is kept in the text buffer
+    private String readTag() throws IOException {
+        text.setLength(0);
+        int c;
+        while ((c = reader.read()) != -1 && c != '<') {
+            text.append((char) c);
+        }
+        if (c == -1) {
+            return null;
+        }
+        StringBuilder tag = new StringBuilder();
+        while ((c = reader.read()) != -1 && c != '>') {
+            tag.append((char) c);
+        }
+        return tag.toString();
+    }
+
+    private static String getLocalName(String tag) {
+        int end = 0;
+        while (end < tag.length() && !Character.isWhitespace(tag.charAt(end)) && tag.charAt(end) != '/') {
+            end += 1;
+        }
+        String name = tag.substring(0, end);
+        return name.substring(name.indexOf(':') + 1);
+    }
+
+    private static double getAttribute(String tag, Pattern pattern) {
+        Matcher matcher = pattern.matcher(tag);
+        if (!matcher.find()) {
+            throw new NumberFormatException("Missing coordinate in " + tag);
+        }
+        return Double.parseDouble(matcher.group(1).trim());
+    }
+
+    // ISO 8601 as written by GPX loggers, for example 2017-07-14T02:40:00.5Z or 2017-07-14T04:40:00+02:00
+    private static Date parseIsoTime(String value) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(5, 7)) - 1,
+                Integer.parseInt(value.substring(8, 10)), Integer.parseInt(value.substring(11, 13)),
+                Integer.parseInt(value.substring(14, 16)), Integer.parseInt(value.substring(17, 19)));
+        long time = calendar.getTimeInMillis();
+        int index = 19;
+        if (index < value.length() && value.charAt(index) == '.') {
+            int start = ++index;
+            while (index < value.length() && Character.isDigit(value.charAt(index))) {
+                index += 1;
+            }
+            time += Math.round(Double.parseDouble("0." + value.substring(start, index)) * 1000);
+        }
+        if (index < value.length() && (value.charAt(index) == '+' || value.charAt(index) == '-')) {
+            long offset = Integer.parseInt(value.substring(index + 1, index + 3)) * 60
+                    + Integer.parseInt(value.substring(index + 4, index + 6));
+            time -= (value.charAt(index) == '+' ? 1 : -1) * offset * 60 * 1000;
+        }
+        return new Date(time);
+    }
+
+    // track and route points, speed and course may be plain elements or Garmin extensions
+    private Position readGpx() throws IOException {
+        Position position = null;
+        String tag;
+        while ((tag = readTag()) != null) {
+            if (tag.startsWith("?") || tag.startsWith("!")) {
+                continue;
+            }
+            boolean closing = tag.startsWith("/");
+            String name = getLocalName(closing ? tag.substring(1) : tag);
+            try {
+                if (!closing && (name.equals("trkpt") || name.equals("rtept"))) {
+                    position = new Position();
+                    position.setLatitude(getAttribute(tag, LATITUDE));
+                    position.setLongitude(getAttribute(tag, LONGITUDE));
+                    if (tag.endsWith("/")) {
+                        position = null;
+                    }
+                } else if (position != null && closing) {
+                    String value = text.toString().trim();
+                    switch (name) {
+                        case "trkpt":
+                        case "rtept":
+                            if (position.getTime() != null) {
+                                return position;
+                            }
+                            position = null;
+                            break;
+                        case "ele":
+                            position.setAltitude(Double.parseDouble(value));
+                            break;
+                        case "time":
+                            position.setTime(parseIsoTime(value));
+                            break;
+                        case "speed":
+                            position.setSpeed(Double.parseDouble(value) * KNOTS_PER_MPS);
+                            break;
+                        case "course":
+                            position.setCourse(Double.parseDouble(value));
+                            break;
+                        case "hdop":
+                            position.setAccuracy(Double.parseDouble(value) * HDOP_ERROR);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                position = null;
+            }
+        }
+        return null;
+    }
+
+}
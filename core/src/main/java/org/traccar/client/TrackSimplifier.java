@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.List;
+
+// time-aware Douglas-Peucker, a point is dropped when the position interpolated at its time is within tolerance
+public class TrackSimplifier {
+
+    private static final double STOP_SPEED = 1.0; // knots
+    private static final long STOP_GAP = 5 * 60 * 1000;
+    private static final double TURN_ANGLE = 30.0; // degrees
+
+    private final double tolerance;
+
+    public TrackSimplifier(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    private static boolean isCell(Position position) {
+        return position.getGsm() != null && position.getGsm() == 1;
+    }
+
+    private static boolean isMoving(Position position) {
+        return position.getSpeed() >= STOP_SPEED;
+    }
+
+    private static Position neighbour(List<Position> positions, int index, int step) {
+        for (int i = index + step; i >= 0 && i < positions.size(); i += step) {
+            if (!isCell(positions.get(i))) {
+                return positions.get(i);
+            }
+        }
+        return null;
+    }
+
+    // endpoints, cell positions, both ends of a stop and turns are never removed, only satellite fixes count as neighbours
+    private static boolean isFixed(List<Position> positions, int index) {
+        Position position = positions.get(index);
+        if (isCell(position)) {
+            return true;
+        }
+        Position previous = neighbour(positions, index, -1);
+        Position next = neighbour(positions, index, 1);
+        if (previous == null || next == null) {
+            return true;
+        }
+        if (position.getTime().getTime() - previous.getTime().getTime() >= STOP_GAP
+                || next.getTime().getTime() - position.getTime().getTime() >= STOP_GAP) {
+            return true;
+        }
+        if (isMoving(position) != isMoving(previous) || isMoving(position) != isMoving(next)) {
+            return true;
+        }
+        return isMoving(position) && isMoving(previous)
+                && LocationFilter.headingChange(previous.getCourse(), position.getCourse()) >= TURN_ANGLE;
+    }
+
+    // distance between a point and the segment position at the same time
+    private static double synchronizedDistance(Position start, Position end, Position position) {
+        long duration = end.getTime().getTime() - start.getTime().getTime();
+        double ratio = duration > 0 ? (position.getTime().getTime() - start.getTime().getTime()) / (double) duration : 0.5;
+        ratio = Math.min(Math.max(ratio, 0), 1);
+        double latitude = start.getLatitude() + (end.getLatitude() - start.getLatitude()) * ratio;
+        double longitude = start.getLongitude() + (end.getLongitude() - start.getLongitude()) * ratio;
+        return DistanceCalculator.distance(latitude, longitude, position.getLatitude(), position.getLongitude());
+    }
+
+    // positions are ordered by time, the result marks the ones to keep
+    public boolean[] simplify(List<Position> positions) {
+        int size = positions.size();
+        boolean[] keep = new boolean[size];
+        int start = -1;
+        for (int i = 0; i < size; i++) {
+            if (isFixed(positions, i)) {
+                keep[i] = true;
+                if (isCell(positions.get(i))) {
+                    continue;
+                }
+                if (start >= 0) {
+                    simplify(positions, keep, start, i);
+                }
+                start = i;
+            }
+        }
+        return keep;
+    }
+
+    // iterative so long straight runs do not grow the call stack, cell positions between anchors are skipped
+    private void simplify(List<Position> positions, boolean[] keep, int first, int last) {
+        int[] stack = new int[2 * (last - first + 1)];
+        int top = 0;
+        stack[top++] = first;
+        stack[top++] = last;
+        while (top > 0) {
+            int end = stack[--top];
+            int start = stack[--top];
+            double maxDistance = -1;
+            int farthest = -1;
+            for (int i = start + 1; i < end; i++) {
+                if (!isCell(positions.get(i))) {
+                    double distance = synchronizedDistance(positions.get(start), positions.get(end), positions.get(i));
+                    if (distance > maxDistance) {
+                        maxDistance = distance;
+                        farthest = i;
+                    }
+                }
+            }
+            if (farthest >= 0 && maxDistance > tolerance) {
+                keep[farthest] = true;
+                stack[top++] = start;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = end;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,825 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class TrackingPipeline {
+
+    public static final int RETRY_DELAY = 30 * 1000;
+    private static final int MAX_PENDING_WRITES = 10000;
+    private static final int UPLOAD_WORKERS = 1;
+    private static final int BUFFER_CAPACITY = 32;
+    private static final int SYNC_SLACK_DIVIDER = 4;
+    private static final int MAX_TRACES = 1000;
+    private static final int COMPACTION_CHUNK = 500;
+
+    public interface Lock {
+        void release();
+    }
+
+    public enum Preparation {
+        SEND, DISCARD, RETRY
+    }
+
+    public interface PrepareHandler {
+        void onComplete(Preparation result);
+    }
+
+    // platform services the pipeline needs besides storage and transport
+    public interface Delegate {
+
+        Lock acquireLock(String operation);
+
+        // unmetered network or charging, uploads do not wait for a sync window
+        boolean isWindowForced();
+
+        void prepare(Position position, PrepareHandler handler);
+
+        void onSendResult(boolean success);
+
+        void onDelivered(long id);
+
+        void onDeleted(long id);
+
+        void onStallStart(long time);
+
+        void onStallEnd();
+
+        // positions lost for good, storage failed for too long or after stop
+        void onDropped(int count);
+
+        void onStatus();
+
+        void log(String message);
+
+    }
+
+    private static final Metrics.Gauge queueDepth = Metrics.gauge("queue.depth");
+    private static final Metrics.Histogram queueDepthHistory = Metrics.histogram("queue.depth.samples", Metrics.COUNT_BUCKETS);
+    private static final Metrics.Histogram fixLatency = Metrics.histogram("fix.upload.latency", Metrics.TIME_BUCKETS);
+    private static final Metrics.Counter compactedRows = Metrics.counter("compaction.rows.removed");
+    private static final Metrics.Histogram compactionTime = Metrics.histogram("compaction.time", Metrics.TIME_BUCKETS);
+
+    private final Clock clock;
+    private final PositionStore store;
+    private final Transport transport;
+    private final Delegate delegate;
+
+    private boolean isStarted;
+    private boolean isOnline;
+    private boolean isWriting;
+    private boolean isSignaled;
+    private boolean isBuffered;
+    private long bufferAge;
+    private boolean isSync;
+    private boolean isFlushing;
+    private long syncInterval;
+    private long syncBacklog;
+    private long lastFlush;
+    private int traceRate;
+    private boolean isCompaction;
+    private boolean isCompacting;
+    private long compactionBacklog;
+    private double compactionTolerance;
+    private long uncompacted;
+    private long compactedId;
+
+    private String url;
+    private String deviceId;
+
+    private final LinkedList<Position> pendingWrites = new LinkedList<>();
+    private final List<UploadWorker> workers = new ArrayList<>();
+    private final Set<Long> inFlight = new HashSet<>();
+    private final Set<Long> compacting = new HashSet<>();
+    private final PositionBuffer buffer = new PositionBuffer(BUFFER_CAPACITY);
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private final Random random = new Random();
+
+    // traces of positions written by this process, stored rows do not keep them
+    private final Map<Long, PositionTrace> traces = new LinkedHashMap<Long, PositionTrace>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, PositionTrace> eldest) {
+            return size() > MAX_TRACES;
+        }
+    };
+
+    public TrackingPipeline(Clock clock, PositionStore store, Transport transport, Delegate delegate) {
+        this.clock = clock;
+        this.store = store;
+        this.transport = transport;
+        this.delegate = delegate;
+        for (int i = 0; i < UPLOAD_WORKERS; i++) {
+            workers.add(new UploadWorker());
+        }
+    }
+
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public void setTraceRate(int traceRate) {
+        this.traceRate = traceRate;
+    }
+
+    public void setBuffer(boolean buffered, long age) {
+        boolean wasBuffered = isBuffered;
+        isBuffered = buffered;
+        bufferAge = age;
+        if (wasBuffered && !isBuffered) {
+            spill(Long.MAX_VALUE);
+        } else if (isBuffered && !buffer.isEmpty()) {
+            spill(clock.currentTime() - bufferAge);
+        }
+    }
+
+    public void setSync(boolean sync, long interval, long backlog) {
+        boolean wasSync = isSync;
+        long previousInterval = syncInterval;
+        isSync = sync;
+        syncInterval = interval;
+        syncBacklog = backlog;
+        if (!isStarted) {
+            return;
+        }
+        if (wasSync && !isSync) {
+            clock.removeCallbacks(syncTask);
+            isFlushing = false;
+        } else if (isSync && (!wasSync || previousInterval != syncInterval)) {
+            clock.removeCallbacks(syncTask);
+            if (!isFlushing) {
+                lastFlush = clock.currentTime();
+                clock.postWakeup(syncTask, syncInterval);
+            }
+        }
+    }
+
+    public void setCompaction(boolean compaction, long backlog, double tolerance) {
+        isCompaction = compaction;
+        compactionBacklog = backlog;
+        compactionTolerance = tolerance;
+    }
+
+    public void setOnline(boolean online) {
+        isOnline = online;
+        if (!isStarted) {
+            return;
+        }
+        if (isOnline) {
+            signal();
+        } else {
+            spill(Long.MAX_VALUE);
+            if (metrics.getQueueDepth() > 0) {
+                startStall();
+            }
+        }
+    }
+
+    public void restoreStall(long start) {
+        metrics.startStall(start);
+    }
+
+    // rows delivered before a restart are not read again, even if deleting them fails
+    public void restoreDelivered(Collection<Long> ids) {
+        inFlight.addAll(ids);
+    }
+
+    public void start() {
+        isStarted = true;
+        store.countPositionsAsync(new PositionStore.Handler<Long>() {
+            @Override
+            public void onComplete(boolean success, Long result) {
+                if (success) {
+                    metrics.setQueueDepth(result);
+                    uncompacted = result;
+                    checkCompaction();
+                }
+                signal();
+            }
+        });
+        if (isSync) {
+            lastFlush = clock.currentTime();
+            clock.postWakeup(syncTask, syncInterval);
+        }
+    }
+
+    // returns positions that are only held in memory, caller is expected to persist them,
+    // a direct send still in flight deletes its stored row if the server accepts it after all
+    public List<Position> stop() {
+        isStarted = false;
+        clock.removeCallbacks(syncTask);
+        clock.removeCallbacks(spillTask);
+        clock.removeCallbacks(signalTask);
+        clock.removeCallbacks(writeTask);
+        isSignaled = false;
+        isCompacting = false;
+        List<Position> positions = new ArrayList<>(pendingWrites);
+        pendingWrites.clear();
+        for (UploadWorker worker : workers) {
+            clock.removeCallbacks(worker.retryTask);
+            if (worker.directPosition != null) {
+                positions.add(worker.directPosition);
+                worker.directPosition = null;
+            }
+        }
+        while (!buffer.isEmpty()) {
+            positions.add(buffer.poll());
+        }
+        return positions;
+    }
+
+    public void onPositionUpdate(Position position) {
+        metrics.onFix(clock.currentTime(), position.getTime().getTime());
+        if (isSync && position.getPriority()) {
+            flush("priority");
+        }
+        if (isBuffered && !isSync && isOnline) {
+            buffer(position);
+        } else {
+            write(position);
+        }
+    }
+
+    //
+    // Pipeline stages:
+    //
+    // ingest: position -> pending writes -> insert -> signal
+    //         position -> buffer -> signal (write-behind)
+    //
+    // upload: signal -> read -> send -> delete -> read ... -> idle
+    //                            -> retry -> read
+    //         signal -> buffer -> send -> read ... (write-behind)
+    //                                  -> write -> retry -> read
+    //
+    // sync window: signal is held until a flush opens the window, the
+    // window closes again when the queue is empty
+    //
+
+    private void log(String action, Position position) {
+        if (position != null) {
+            if (position.getGsm() == null || position.getGsm().equals(0)) {
+                action += " (" +
+                        "id:" + position.getId() +
+                        " gsm:" + position.getGsm() +
+                        " time:" + position.getTime().getTime() / 1000 +
+                        " lat:" + position.getLatitude() +
+                        " lon:" + position.getLongitude() + ")";
+            } else {
+                action += " (" +
+                        "id:" + position.getId() +
+                        " gsm:" + position.getGsm() +
+                        " time:" + position.getTime().getTime() / 1000 +
+                        " cid:" + position.getLatitude() +
+                        " lac:" + position.getLongitude() + ")";
+            }
+        }
+        delegate.log(action);
+    }
+
+    private void startStall() {
+        long now = clock.currentTime();
+        metrics.startStall(now);
+        delegate.onStallStart(now);
+    }
+
+    private void endStall() {
+        metrics.endStall(clock.currentTime());
+        delegate.onStallEnd();
+    }
+
+    private void trace(Position position, int stage) {
+        PositionTrace trace = position.getTrace();
+        if (trace == null) {
+            trace = traces.remove(position.getId());
+            if (trace == null) {
+                trace = new PositionTrace();
+            }
+            position.setTrace(trace);
+        }
+        if (stage == PositionTrace.SEND) {
+            if (position.getGsm() != null && position.getGsm() == 1) {
+                trace.mark(PositionTrace.RESOLVE, clock.elapsedTime());
+            }
+            trace.setSampled(traceRate > 0 && random.nextInt(100) < traceRate);
+        }
+        trace.mark(stage, clock.elapsedTime());
+    }
+
+    private void updateStatus() {
+        queueDepth.set(metrics.getQueueDepth());
+        queueDepthHistory.record(metrics.getQueueDepth());
+        delegate.onStatus();
+    }
+
+    private void drop(List<Position> positions) {
+        for (Position position : positions) {
+            log("drop", position);
+            metrics.onDrop();
+        }
+        delegate.onDropped(positions.size());
+    }
+
+    // while storage fails positions stay in memory and go out as one batch, stop hands them to the caller
+    private void write(Position position) {
+        log("write", position);
+        if (pendingWrites.size() >= MAX_PENDING_WRITES) {
+            drop(Collections.singletonList(pendingWrites.removeFirst()));
+        }
+        pendingWrites.add(position);
+        if (!isWriting) {
+            flushWrites();
+        }
+    }
+
+    private final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            if (!isWriting && !pendingWrites.isEmpty()) {
+                flushWrites();
+            }
+        }
+    };
+
+    private void flushWrites() {
+        final List<Position> positions = new ArrayList<>(pendingWrites);
+        final long startTime = clock.currentTime();
+        pendingWrites.clear();
+        isWriting = true;
+        final Lock lock = delegate.acquireLock("write");
+        store.insertPositionsAsync(positions, new PositionStore.Handler<Void>() {
+            @Override
+            public void onComplete(boolean success, Void result) {
+                isWriting = false;
+                if (success) {
+                    long now = clock.elapsedTime();
+                    for (Position position : positions) {
+                        if (position.getTrace() != null) {
+                            position.getTrace().mark(PositionTrace.WRITE, now);
+                            traces.put(position.getId(), position.getTrace());
+                        }
+                    }
+                    metrics.onIngest(positions.size(), clock.currentTime() - startTime);
+                    uncompacted += positions.size();
+                    updateStatus();
+                    if (isSync) {
+                        checkFlush();
+                    }
+                    checkCompaction();
+                    signal();
+                    if (!pendingWrites.isEmpty()) {
+                        flushWrites();
+                    }
+                } else if (!isStarted) {
+                    // stop has already handed pending writes to the caller, nothing retries these
+                    log("write failed", null);
+                    drop(positions);
+                } else {
+                    log("write failed", null);
+                    pendingWrites.addAll(0, positions);
+                    List<Position> overflow = new ArrayList<>();
+                    while (pendingWrites.size() > MAX_PENDING_WRITES) {
+                        overflow.add(pendingWrites.removeFirst());
+                    }
+                    if (!overflow.isEmpty()) {
+                        drop(overflow);
+                    }
+                    clock.removeCallbacks(writeTask);
+                    clock.postDelayed(writeTask, RETRY_DELAY);
+                }
+                lock.release();
+            }
+        });
+    }
+
+    private final Runnable spillTask = new Runnable() {
+        @Override
+        public void run() {
+            spill(clock.currentTime() - bufferAge);
+        }
+    };
+
+    private void buffer(Position position) {
+        log("buffer", position);
+        if (buffer.isFull()) {
+            write(buffer.poll());
+        }
+        if (buffer.isEmpty()) {
+            clock.postDelayed(spillTask, bufferAge);
+        }
+        buffer.add(position, clock.currentTime());
+        signal();
+    }
+
+    private void spill(long before) {
+        while (!buffer.isEmpty() && buffer.peekTime() <= before) {
+            write(buffer.poll());
+        }
+        clock.removeCallbacks(spillTask);
+        if (!buffer.isEmpty()) {
+            clock.postDelayed(spillTask, buffer.peekTime() + bufferAge - clock.currentTime());
+        }
+    }
+
+    // workers take their locks now rather than from a posted signal, before the alarm lets the device sleep
+    private final Runnable syncTask = new Runnable() {
+        @Override
+        public void run() {
+            flush("schedule");
+            clock.removeCallbacks(signalTask);
+            signalTask.run();
+        }
+    };
+
+    private void checkFlush() {
+        long now = clock.currentTime();
+        if (metrics.getQueueDepth() >= syncBacklog) {
+            flush("backlog");
+        } else if (now - lastFlush >= syncInterval - syncInterval / SYNC_SLACK_DIVIDER) {
+            // device is already awake for a fix, so pull the scheduled flush forward
+            flush("merged");
+        }
+    }
+
+    public void flush(String reason) {
+        if (!isFlushing) {
+            log("flush " + reason, null);
+            isFlushing = true;
+            metrics.onFlush();
+            clock.removeCallbacks(syncTask);
+        }
+        signal();
+    }
+
+    private void endFlush() {
+        if (isFlushing) {
+            isFlushing = false;
+            lastFlush = clock.currentTime();
+            clock.postWakeup(syncTask, syncInterval);
+        }
+    }
+
+    private boolean isWindowOpen() {
+        return !isSync || isFlushing || delegate.isWindowForced();
+    }
+
+    // a job runs once the backlog passes the threshold and at least that many rows were written since the last one
+    private void checkCompaction() {
+        if (isCompaction && isStarted && !isCompacting
+                && metrics.getQueueDepth() >= compactionBacklog && uncompacted >= compactionBacklog) {
+            isCompacting = true;
+            uncompacted = 0;
+            log("compact", null);
+            compact(compactedId, 0, clock.elapsedTime());
+        }
+    }
+
+    // rows are simplified in chunks, the last row of a chunk is kept and anchors the next one
+    private void compact(final long fromId, final int removed, final long startTime) {
+        final Lock lock = delegate.acquireLock("compact");
+        store.selectPositionsAsync(fromId, COMPACTION_CHUNK, new PositionStore.Handler<List<Position>>() {
+            @Override
+            public void onComplete(boolean success, List<Position> result) {
+                if (!isStarted || !isCompacting) {
+                    lock.release();
+                    return;
+                }
+                if (!success || result.size() <= 1) {
+                    endCompaction(removed, startTime);
+                    lock.release();
+                    return;
+                }
+                List<Position> track = new ArrayList<>();
+                for (Position position : result) {
+                    if (position.getDeviceId().equals(deviceId)) {
+                        track.add(position);
+                    }
+                }
+                boolean[] keep = new TrackSimplifier(compactionTolerance).simplify(track);
+                // reads issued before this callback have already claimed their rows, later ones skip these
+                final List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < keep.length; i++) {
+                    long id = track.get(i).getId();
+                    if (!keep[i] && !inFlight.contains(id)) {
+                        ids.add(id);
+                    }
+                }
+                compacting.addAll(ids);
+                final long lastId = result.get(result.size() - 1).getId();
+                final boolean more = result.size() == COMPACTION_CHUNK;
+                if (ids.isEmpty()) {
+                    compactNext(lastId, more, removed, startTime);
+                } else {
+                    deleteCompacted(ids, lastId, more, removed, startTime);
+                }
+                lock.release();
+            }
+        });
+    }
+
+    private void deleteCompacted(
+            final List<Long> ids, final long lastId, final boolean more, final int removed, final long startTime) {
+        final Lock lock = delegate.acquireLock("compact");
+        store.deletePositionsAsync(ids, new PositionStore.Handler<Integer>() {
+            @Override
+            public void onComplete(boolean success, Integer result) {
+                compacting.removeAll(ids);
+                if (success) {
+                    for (long id : ids) {
+                        traces.remove(id);
+                    }
+                    metrics.onCompact(result);
+                    compactedRows.add(result);
+                }
+                if (isStarted && isCompacting) {
+                    if (success) {
+                        compactNext(lastId, more, removed + result, startTime);
+                    } else {
+                        endCompaction(removed, startTime);
+                    }
+                }
+                lock.release();
+            }
+        });
+    }
+
+    private void compactNext(long lastId, boolean more, int removed, long startTime) {
+        compactedId = lastId;
+        if (more) {
+            compact(lastId, removed, startTime);
+        } else {
+            endCompaction(removed, startTime);
+        }
+    }
+
+    private void endCompaction(int removed, long startTime) {
+        long time = clock.elapsedTime() - startTime;
+        isCompacting = false;
+        metrics.onCompaction(time);
+        compactionTime.record(time);
+        log("compact removed " + removed + " rows in " + time + " ms", null);
+        updateStatus();
+    }
+
+    private final Runnable signalTask = new Runnable() {
+        @Override
+        public void run() {
+            isSignaled = false;
+            for (UploadWorker worker : workers) {
+                worker.wake();
+            }
+        }
+    };
+
+    public void signal() {
+        if (!isSignaled) {
+            isSignaled = true;
+            clock.post(signalTask);
+        }
+    }
+
+    private class UploadWorker {
+
+        private boolean isBusy;
+        private long startTime;
+        private Position directPosition;
+
+        private final Runnable retryTask = new Runnable() {
+            @Override
+            public void run() {
+                isBusy = false;
+                wake();
+            }
+        };
+
+        public void wake() {
+            if (!isBusy && isStarted && isOnline && isWindowOpen()) {
+                isBusy = true;
+                next();
+            }
+        }
+
+        // callbacks that complete after stop finish their step but do not start another
+        private void next() {
+            if (!isStarted) {
+                isBusy = false;
+            } else if (metrics.getQueueDepth() == 0 && !isWriting && pendingWrites.isEmpty() && !buffer.isEmpty()) {
+                sendDirect(buffer.poll());
+            } else {
+                read();
+            }
+        }
+
+        private void sendDirect(final Position position) {
+            log("send direct", position);
+            trace(position, PositionTrace.READ);
+            trace(position, PositionTrace.SEND);
+            final Lock lock = delegate.acquireLock("send");
+            directPosition = position;
+            startTime = clock.currentTime();
+            metrics.onRadioActivity(startTime);
+            transport.send(ProtocolFormatter.formatRequest(url, position), new Transport.Handler() {
+                @Override
+                public void onComplete(boolean success) {
+                    boolean unsaved = directPosition == position;
+                    directPosition = null;
+                    if (success) {
+                        endStall();
+                        metrics.onDelivery(clock.currentTime());
+                        fixLatency.record(clock.currentTime() - position.getTime().getTime());
+                        trace(position, PositionTrace.ACK);
+                        metrics.onDirectUpload(clock.currentTime() - startTime);
+                        if (!unsaved && position.getId() != 0) {
+                            deleteStored(position);
+                        }
+                        updateStatus();
+                        next();
+                    } else if (unsaved) {
+                        write(position);
+                        spill(Long.MAX_VALUE);
+                        retry(null);
+                    } else {
+                        // stop already returned the position to the caller
+                        isBusy = false;
+                    }
+                    delegate.onSendResult(success);
+                    lock.release();
+                }
+            });
+        }
+
+        // journaled first like any delivered row, so recovery deletes it if this delete does not happen
+        private void deleteStored(final Position position) {
+            log("delete stored", position);
+            delegate.onDelivered(position.getId());
+            final Lock lock = delegate.acquireLock("delete");
+            store.deletePositionAsync(position.getId(), new PositionStore.Handler<Void>() {
+                @Override
+                public void onComplete(boolean success, Void result) {
+                    if (success) {
+                        delegate.onDeleted(position.getId());
+                    }
+                    lock.release();
+                }
+            });
+        }
+
+        private void read() {
+            log("read", null);
+            final Lock lock = delegate.acquireLock("read");
+            startTime = clock.currentTime();
+            Collection<Long> exclude = inFlight;
+            if (!compacting.isEmpty()) {
+                exclude = new HashSet<>(inFlight);
+                exclude.addAll(compacting);
+            }
+            store.selectPositionAsync(exclude, new PositionStore.Handler<Position>() {
+                @Override
+                public void onComplete(boolean success, Position result) {
+                    if (!isStarted) {
+                        isBusy = false;
+                    } else if (success) {
+                        if (result != null && compacting.contains(result.getId())) {
+                            // selected before compaction claimed the row, it is about to be deleted
+                            read();
+                        } else if (result != null) {
+                            inFlight.add(result.getId());
+                            trace(result, PositionTrace.READ);
+                            if (result.getDeviceId().equals(deviceId)) {
+                                prepare(result);
+                            } else {
+                                delete(result, false);
+                            }
+                        } else {
+                            metrics.setQueueDepth(0);
+                            if (!buffer.isEmpty()) {
+                                sendDirect(buffer.poll());
+                            } else {
+                                isBusy = false;
+                                endStall();
+                                endFlush();
+                            }
+                        }
+                    } else {
+                        retry(null);
+                    }
+                    lock.release();
+                }
+            });
+        }
+
+        private void prepare(final Position position) {
+            delegate.prepare(position, new PrepareHandler() {
+                @Override
+                public void onComplete(Preparation result) {
+                    switch (result) {
+                        case SEND:
+                            send(position);
+                            break;
+                        case DISCARD:
+                            delete(position, false);
+                            break;
+                        default:
+                            retry(position);
+                            break;
+                    }
+                }
+            });
+        }
+
+        private void delete(final Position position, final boolean uploaded) {
+            log("delete", position);
+            final Lock lock = delegate.acquireLock("delete");
+            store.deletePositionAsync(position.getId(), new PositionStore.Handler<Void>() {
+                @Override
+                public void onComplete(boolean success, Void result) {
+                    if (success) {
+                        inFlight.remove(position.getId());
+                        delegate.onDeleted(position.getId());
+                        traces.remove(position.getId());
+                        if (uploaded) {
+                            trace(position, PositionTrace.DELETE);
+                            metrics.onUpload(clock.currentTime() - startTime);
+                        } else {
+                            metrics.onDiscard();
+                        }
+                        updateStatus();
+                        next();
+                    } else {
+                        if (!uploaded) {
+                            inFlight.remove(position.getId());
+                        }
+                        // delivered positions stay excluded until the journal removes them
+                        retry(null);
+                    }
+                    lock.release();
+                }
+            });
+        }
+
+        private void send(final Position position) {
+            log("send", position);
+            final Lock lock = delegate.acquireLock("send");
+            metrics.onRadioActivity(clock.currentTime());
+            trace(position, PositionTrace.SEND);
+            transport.send(ProtocolFormatter.formatRequest(url, position), new Transport.Handler() {
+                @Override
+                public void onComplete(boolean success) {
+                    if (success) {
+                        endStall();
+                        metrics.onDelivery(clock.currentTime());
+                        fixLatency.record(clock.currentTime() - position.getTime().getTime());
+                        trace(position, PositionTrace.ACK);
+                        delegate.onDelivered(position.getId());
+                        delete(position, true);
+                    } else {
+                        retry(position);
+                    }
+                    delegate.onSendResult(success);
+                    lock.release();
+                }
+            });
+        }
+
+        private void retry(Position position) {
+            log("retry", position);
+            if (position != null) {
+                inFlight.remove(position.getId());
+            }
+            startStall();
+            updateStatus();
+            clock.postDelayed(retryTask, RETRY_DELAY);
+        }
+
+    }
+
+}
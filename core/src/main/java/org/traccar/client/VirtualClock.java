@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// deterministic clock for simulations and tests, tasks due at the same time run in posting order
+public class VirtualClock implements Clock {
+
+    private static class Task implements Comparable<Task> {
+
+        private final long time;
+        private final long sequence;
+        private final Runnable runnable;
+        private boolean cancelled;
+
+        Task(long time, long sequence, Runnable runnable) {
+            this.time = time;
+            this.sequence = sequence;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : sequence > other.sequence ? 1 : 0;
+        }
+
+    }
+
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+    private final Map<Runnable, List<Task>> scheduled = new IdentityHashMap<>();
+    private final long startTime;
+    private long time;
+    private long sequence;
+
+    public VirtualClock(long time) {
+        this.startTime = time;
+        this.time = time;
+    }
+
+    @Override
+    public long currentTime() {
+        return time;
+    }
+
+    @Override
+    public long elapsedTime() {
+        return time - startTime;
+    }
+
+    @Override
+    public void post(Runnable task) {
+        postDelayed(task, 0);
+    }
+
+    @Override
+    public void postDelayed(Runnable runnable, long delay) {
+        Task task = new Task(time + Math.max(delay, 0), sequence++, runnable);
+        tasks.add(task);
+        List<Task> list = scheduled.get(runnable);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            scheduled.put(runnable, list);
+        }
+        list.add(task);
+    }
+
+    // virtual time does not sleep
+    @Override
+    public void postWakeup(Runnable runnable, long delay) {
+        postDelayed(runnable, delay);
+    }
+
+    // cancelled tasks stay queued and are skipped, which keeps removal cheap with many clients
+    @Override
+    public void removeCallbacks(Runnable runnable) {
+        List<Task> list = scheduled.remove(runnable);
+        if (list != null) {
+            for (Task task : list) {
+                task.cancelled = true;
+            }
+        }
+    }
+
+    public boolean isIdle() {
+        return scheduled.isEmpty();
+    }
+
+    // runs the next task due no later than the given time, returns false when there is none
+    public boolean runNext(long until) {
+        while (!tasks.isEmpty() && tasks.peek().time <= until) {
+            Task task = tasks.poll();
+            if (task.cancelled) {
+                continue;
+            }
+            List<Task> list = scheduled.get(task.runnable);
+            list.remove(task);
+            if (list.isEmpty()) {
+                scheduled.remove(task.runnable);
+            }
+            time = Math.max(time, task.time);
+            task.runnable.run();
+            return true;
+        }
+        return false;
+    }
+
+    public void advance(long delay) {
+        long end = time + delay;
+        while (runNext(end)) {
+        }
+        time = end;
+    }
+
+}
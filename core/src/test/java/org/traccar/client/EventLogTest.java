@@ -0,0 +1,60 @@
+
+package org.traccar.client;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventLogTest {
+
+    @Test
+    public void testWrap() {
+        EventLog log = new EventLog(4);
+        for (int i = 0; i < 6; i++) {
+            log.add(1, i);
+        }
+
+        List<EventLog.Event> events = log.snapshot();
+        assertEquals(4, events.size());
+        assertEquals(2, events.get(0).getArgs()[0]);
+        assertEquals(5, events.get(3).getArgs()[0]);
+
+        log.clear();
+        assertTrue(log.snapshot().isEmpty());
+
+        log.add(2);
+        assertEquals(1, log.snapshot().size());
+        assertEquals(2, log.snapshot().get(0).getCode());
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final EventLog log = new EventLog(64);
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        log.add(1, j);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<EventLog.Event> events = log.snapshot();
+        assertEquals(64, events.size());
+        for (int i = 1; i < events.size(); i++) {
+            assertEquals(events.get(i - 1).getSequence() + 1, events.get(i).getSequence());
+        }
+    }
+
+}
@@ -0,0 +1,407 @@
+
+package org.traccar.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FaultInjectionTest {
+
+    private static final int SCENARIOS = 2000;
+    private static final long SEED = 20170101;
+
+    private static final long DURATION = 60 * 60 * 1000;
+    private static final long DRAIN_TIMEOUT = 24 * 60 * 60 * 1000;
+    private static final long JOURNAL_SAVE_DELAY = 10 * 1000;
+    private static final double SPEED = 15; // meters per second
+
+    // one device through flapping network, failing storage and server, restarts and process deaths
+    private static class Scenario implements TrackingPipeline.Delegate {
+
+        private final long seed;
+        private final Random random;
+        private final FaultyPositionStore store;
+        private final FaultyTransport transport;
+
+        // like the controller journal, deliveries are written at once and removals are saved later
+        private final Set<Long> journal = new HashSet<>();
+        private final Set<Long> unsavedRemovals = new HashSet<>();
+
+        private final Runnable journalTask = new Runnable() {
+            @Override
+            public void run() {
+                saveJournal();
+            }
+        };
+
+        private final Set<Long> emitted = new LinkedHashSet<>();
+        private final Set<Long> crashLost = new HashSet<>();
+        private final Set<Long> recovered = new HashSet<>();
+        private final List<TrackingPipeline> pipelines = new ArrayList<>();
+
+        private VirtualClock clock;
+        private TrackingPipeline pipeline;
+        private long processStart;
+        private int locks;
+
+        private final long fixInterval;
+        private final boolean buffer;
+        private final long bufferAge;
+        private final boolean sync;
+        private final long syncInterval;
+        private final long syncBacklog;
+        private final long flapInterval;
+        private final long restartInterval;
+        private final long killInterval;
+        private final boolean compaction;
+        private final long compactionBacklog;
+        private final double compactionTolerance;
+
+        private long lastFix;
+        private double latitude;
+        private double longitude;
+        private double course;
+
+        Scenario(long seed) {
+            this.seed = seed;
+            random = new Random(seed);
+            store = new FaultyPositionStore(random);
+            transport = new FaultyTransport(random);
+
+            store.setFaults(random.nextDouble() * 0.3, random.nextDouble() * 0.02, random.nextInt(500));
+            transport.setFaults(
+                    random.nextDouble() * 0.5, random.nextDouble() * 0.1, random.nextDouble() * 0.01, random.nextInt(2000));
+
+            fixInterval = 1000 + random.nextInt(60 * 1000);
+            buffer = random.nextBoolean();
+            bufferAge = 10 * 1000 + random.nextInt(120 * 1000);
+            sync = random.nextInt(3) == 0;
+            syncInterval = 60 * 1000 + random.nextInt(10 * 60 * 1000);
+            syncBacklog = 10 + random.nextInt(100);
+            flapInterval = 60 * 1000 + random.nextInt(30 * 60 * 1000);
+            restartInterval = 10 * 60 * 1000 + random.nextInt(60 * 60 * 1000);
+            killInterval = 10 * 60 * 1000 + random.nextInt(60 * 60 * 1000);
+            compaction = random.nextInt(4) == 0;
+            compactionBacklog = 10 + random.nextInt(200);
+            compactionTolerance = 10 + random.nextDouble() * 40;
+
+            latitude = random.nextDouble() * 120 - 60;
+            longitude = random.nextDouble() * 360 - 180;
+            course = random.nextDouble() * 360;
+
+            clock = new VirtualClock(1500000000000L);
+        }
+
+        private String fail(String message) {
+            return "seed " + seed + ": " + message;
+        }
+
+        private long nextEvent(long mean) {
+            return clock.currentTime() + 1 + (long) (-Math.log(1 - random.nextDouble()) * mean);
+        }
+
+        // a new process gets a new clock, tasks and callbacks of the dead one never run
+        private void startProcess() {
+            clock = new VirtualClock(clock.currentTime());
+            store.setClock(clock);
+            locks = 0;
+            startService();
+        }
+
+        private void startService() {
+            processStart = clock.currentTime();
+            transport.setClock(clock);
+
+            pipeline = new TrackingPipeline(clock, store, transport, this);
+            pipelines.add(pipeline);
+            pipeline.setUrl("http://localhost:5055");
+            pipeline.setDeviceId("123456789012345");
+            pipeline.setBuffer(buffer, bufferAge);
+            pipeline.setSync(sync, syncInterval, syncBacklog);
+            pipeline.setCompaction(compaction, compactionBacklog, compactionTolerance);
+            pipeline.setOnline(transport.isOnline());
+
+            final Set<Long> delivered = new HashSet<>(journal);
+            if (!delivered.isEmpty()) {
+                pipeline.restoreDelivered(delivered);
+                recovered.addAll(delivered);
+                store.deletePositionsAsync(delivered, new PositionStore.Handler<Integer>() {
+                    @Override
+                    public void onComplete(boolean success, Integer result) {
+                        if (success) {
+                            removeFromJournal(delivered);
+                        }
+                    }
+                });
+            }
+            pipeline.start();
+        }
+
+        private void endProcess() {
+            long time = clock.currentTime() - processStart;
+            assertTrue(fail("retry rate " + transport.getFailures() + " failures in " + time + " ms"),
+                    transport.getFailures() <= time / TrackingPipeline.RETRY_DELAY + 1);
+        }
+
+        private void saveJournal() {
+            clock.removeCallbacks(journalTask);
+            journal.removeAll(unsavedRemovals);
+            unsavedRemovals.clear();
+        }
+
+        private void removeFromJournal(Collection<Long> ids) {
+            if (unsavedRemovals.isEmpty()) {
+                clock.postDelayed(journalTask, JOURNAL_SAVE_DELAY);
+            }
+            unsavedRemovals.addAll(ids);
+        }
+
+        private void restart() {
+            List<Position> unsaved = pipeline.stop();
+            saveJournal();
+            endProcess();
+            store.getRows().insertPositions(unsaved);
+            startService();
+        }
+
+        // positions only held in memory die with the process
+        private void kill() {
+            endProcess();
+            Set<Long> stored = new HashSet<>();
+            for (Position position : store.getRows().getPositions()) {
+                stored.add(position.getTime().getTime() / 1000);
+            }
+            for (long key : emitted) {
+                if (!stored.contains(key) && !transport.getReceived().containsKey(key)) {
+                    crashLost.add(key);
+                }
+            }
+            unsavedRemovals.clear();
+            startProcess();
+        }
+
+        // a vehicle at constant speed that turns now and then, so compaction has straight runs to remove
+        private void fix() {
+            long time = Math.max(clock.currentTime() / 1000, lastFix + 1);
+            if (lastFix > 0) {
+                if (random.nextInt(10) == 0) {
+                    course = random.nextDouble() * 360;
+                }
+                double distance = SPEED * (time - lastFix);
+                latitude += distance * Math.cos(Math.toRadians(course)) / 111320;
+                longitude += distance * Math.sin(Math.toRadians(course)) / (111320 * Math.cos(Math.toRadians(latitude)));
+            }
+            lastFix = time;
+            emitted.add(time);
+            Position position = new Position();
+            position.setDeviceId("123456789012345");
+            position.setTime(new Date(time * 1000));
+            position.setLatitude(latitude);
+            position.setLongitude(longitude);
+            position.setSpeed(SPEED * 1.943844);
+            position.setCourse(course);
+            position.setGsm(0);
+            pipeline.onPositionUpdate(position);
+        }
+
+        private void runUntil(long time) {
+            while (clock.runNext(time)) {
+                if (store.isCrashed() || transport.isCrashed()) {
+                    kill();
+                }
+            }
+            clock.advance(time - clock.currentTime());
+        }
+
+        public void run() {
+            startProcess();
+            long end = clock.currentTime() + DURATION;
+            long nextFix = clock.currentTime() + random.nextInt((int) fixInterval);
+            long nextFlap = nextEvent(flapInterval);
+            long nextRestart = nextEvent(restartInterval);
+            long nextKill = nextEvent(killInterval);
+            while (true) {
+                long next = Math.min(Math.min(nextFix, nextFlap), Math.min(Math.min(nextRestart, nextKill), end));
+                runUntil(next);
+                if (next == end) {
+                    break;
+                } else if (next == nextFix) {
+                    fix();
+                    nextFix += fixInterval;
+                } else if (next == nextFlap) {
+                    transport.setOnline(!transport.isOnline());
+                    pipeline.setOnline(transport.isOnline());
+                    nextFlap = nextEvent(transport.isOnline() ? flapInterval : flapInterval / 4);
+                } else if (next == nextRestart) {
+                    restart();
+                    nextRestart = nextEvent(restartInterval);
+                } else {
+                    kill();
+                    nextKill = nextEvent(killInterval);
+                }
+            }
+
+            // faults heal and the service restarts, everything stored has to drain
+            store.setFaults(0, 0, 0);
+            transport.setFaults(0, 0, 0, 0);
+            transport.setOnline(true);
+            restart();
+            runUntil(store.getBusyUntil());
+            verifyStored();
+            pipeline.flush("drain");
+            long deadline = clock.currentTime() + DRAIN_TIMEOUT;
+            while (store.getRows().countPositions() > 0 && clock.currentTime() < deadline) {
+                runUntil(clock.currentTime() + 60 * 1000);
+            }
+            runUntil(clock.currentTime() + TrackingPipeline.RETRY_DELAY);
+            endProcess();
+        }
+
+        // batch deletes the harness did not issue for journal recovery come from compaction
+        private Set<Long> getCompacted() {
+            Set<Long> compacted = new HashSet<>();
+            for (Map.Entry<Long, Long> entry : store.getBatchDeleted().entrySet()) {
+                if (!recovered.contains(entry.getKey())) {
+                    compacted.add(entry.getValue());
+                }
+            }
+            return compacted;
+        }
+
+        // stopped pipelines can still drop writes that fail after stop
+        private long getDropped() {
+            long dropped = 0;
+            for (TrackingPipeline instance : pipelines) {
+                dropped += instance.getMetrics().getDropped();
+            }
+            return dropped;
+        }
+
+        private long countMissing(Set<Long> present) {
+            Set<Long> compacted = getCompacted();
+            long missing = 0;
+            for (long key : emitted) {
+                if (!present.contains(key) && !transport.getReceived().containsKey(key)
+                        && !compacted.contains(key) && !crashLost.contains(key)) {
+                    missing += 1;
+                }
+            }
+            return missing;
+        }
+
+        // once writes of stopped pipelines complete, everything neither delivered nor compacted has to be stored
+        private void verifyStored() {
+            Set<Long> stored = new HashSet<>();
+            for (Position position : store.getRows().getPositions()) {
+                stored.add(position.getTime().getTime() / 1000);
+            }
+            long missing = countMissing(stored);
+            long dropped = getDropped();
+            assertTrue(fail(missing + " positions missing from store, " + dropped + " dropped"), missing <= dropped);
+        }
+
+        public void verify() {
+            assertEquals(fail("stored rows after drain"), 0, store.getRows().countPositions());
+            assertEquals(fail("wake locks held after drain"), 0, locks);
+
+            long lost = countMissing(Collections.<Long>emptySet());
+            long dropped = getDropped();
+            assertTrue(fail(lost + " positions lost, " + dropped + " dropped"), lost <= dropped);
+
+            Map<Long, Integer> received = transport.getReceived();
+
+            long total = 0;
+            long duplicates = 0;
+            for (int count : received.values()) {
+                total += count;
+                duplicates += count - 1;
+            }
+            long unacknowledged = total - transport.getAcknowledged();
+            assertTrue(fail(duplicates + " duplicates, " + unacknowledged + " unacknowledged"),
+                    duplicates <= unacknowledged);
+        }
+
+        @Override
+        public TrackingPipeline.Lock acquireLock(String operation) {
+            locks += 1;
+            return new TrackingPipeline.Lock() {
+                private boolean released;
+
+                @Override
+                public void release() {
+                    assertTrue(fail("lock released twice"), !released);
+                    released = true;
+                    locks -= 1;
+                }
+            };
+        }
+
+        @Override
+        public boolean isWindowForced() {
+            return false;
+        }
+
+        @Override
+        public void prepare(Position position, TrackingPipeline.PrepareHandler handler) {
+            handler.onComplete(TrackingPipeline.Preparation.SEND);
+        }
+
+        @Override
+        public void onSendResult(boolean success) {
+        }
+
+        @Override
+        public void onDelivered(long id) {
+            journal.add(id);
+            unsavedRemovals.remove(id);
+        }
+
+        @Override
+        public void onDeleted(long id) {
+            removeFromJournal(Collections.singleton(id));
+        }
+
+        @Override
+        public void onStallStart(long time) {
+        }
+
+        @Override
+        public void onStallEnd() {
+        }
+
+        @Override
+        public void onDropped(int count) {
+        }
+
+        @Override
+        public void onStatus() {
+        }
+
+        @Override
+        public void log(String message) {
+        }
+
+    }
+
+    @Test
+    public void testRandomizedFaults() {
+        for (int i = 0; i < SCENARIOS; i++) {
+            Scenario scenario = new Scenario(SEED + i);
+            scenario.run();
+            scenario.verify();
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+
+package org.traccar.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// operations run in order like the database executor, completing after a random latency or failing
+public class FaultyPositionStore implements PositionStore {
+
+    private final Random random;
+    private final MemoryPositionStore rows;
+    private final Map<Long, Long> batchDeleted = new HashMap<>();
+
+    private Clock clock;
+    private long busyUntil;
+    private boolean crashed;
+
+    private double errorRate;
+    private double crashRate;
+    private long maxLatency;
+
+    public FaultyPositionStore(Random random) {
+        this.random = random;
+        rows = new MemoryPositionStore(null);
+    }
+
+    // pending operations of the previous process never complete
+    public void setClock(Clock clock) {
+        this.clock = clock;
+        busyUntil = 0;
+        crashed = false;
+    }
+
+    public void setFaults(double errorRate, double crashRate, long maxLatency) {
+        this.errorRate = errorRate;
+        this.crashRate = crashRate;
+        this.maxLatency = maxLatency;
+    }
+
+    // process died in the middle of a batch that is not written in one transaction
+    public boolean isCrashed() {
+        return crashed;
+    }
+
+    public MemoryPositionStore getRows() {
+        return rows;
+    }
+
+    // operations issued so far have completed by this time
+    public long getBusyUntil() {
+        return busyUntil;
+    }
+
+    // ids of rows removed by batch deletes, mapped to their fix time in seconds
+    public Map<Long, Long> getBatchDeleted() {
+        return batchDeleted;
+    }
+
+    private abstract class Operation implements Runnable {
+
+        protected boolean fail() {
+            return random.nextDouble() < errorRate;
+        }
+
+        public void schedule() {
+            long now = clock.currentTime();
+            busyUntil = Math.max(busyUntil, now) + (maxLatency > 0 ? (long) (random.nextDouble() * maxLatency) : 0);
+            clock.postDelayed(this, busyUntil - now);
+        }
+
+    }
+
+    @Override
+    public void insertPositionsAsync(final List<Position> positions, final Handler<Void> handler) {
+        final List<Position> batch = new ArrayList<>(positions);
+        new Operation() {
+            @Override
+            public void run() {
+                if (random.nextDouble() < crashRate) {
+                    rows.insertPositions(batch.subList(0, random.nextInt(batch.size())));
+                    crashed = true;
+                } else if (fail()) {
+                    handler.onComplete(false, null);
+                } else {
+                    rows.insertPositions(batch);
+                    handler.onComplete(true, null);
+                }
+            }
+        }.schedule();
+    }
+
+    @Override
+    public void selectPositionAsync(Collection<Long> exclude, final Handler<Position> handler) {
+        final Collection<Long> excludeCopy = new ArrayList<>(exclude);
+        new Operation() {
+            @Override
+            public void run() {
+                if (fail()) {
+                    handler.onComplete(false, null);
+                } else {
+                    handler.onComplete(true, rows.selectPosition(excludeCopy));
+                }
+            }
+        }.schedule();
+    }
+
+    @Override
+    public void selectPositionsAsync(final long fromId, final int limit, final Handler<List<Position>> handler) {
+        new Operation() {
+            @Override
+            public void run() {
+                if (fail()) {
+                    handler.onComplete(false, null);
+                } else {
+                    handler.onComplete(true, rows.selectPositions(fromId, limit));
+                }
+            }
+        }.schedule();
+    }
+
+    @Override
+    public void countPositionsAsync(final Handler<Long> handler) {
+        new Operation() {
+            @Override
+            public void run() {
+                if (fail()) {
+                    handler.onComplete(false, null);
+                } else {
+                    handler.onComplete(true, rows.countPositions());
+                }
+            }
+        }.schedule();
+    }
+
+    @Override
+    public void deletePositionAsync(final long id, final Handler<Void> handler) {
+        new Operation() {
+            @Override
+            public void run() {
+                handler.onComplete(!fail() && rows.deletePosition(id), null);
+            }
+        }.schedule();
+    }
+
+    @Override
+    public void deletePositionsAsync(Collection<Long> ids, final Handler<Integer> handler) {
+        final Collection<Long> idsCopy = new HashSet<>(ids);
+        new Operation() {
+            @Override
+            public void run() {
+                if (fail()) {
+                    handler.onComplete(false, null);
+                } else {
+                    for (Position position : rows.getPositions()) {
+                        if (idsCopy.contains(position.getId())) {
+                            batchDeleted.put(position.getId(), position.getTime().getTime() / 1000);
+                        }
+                    }
+                    handler.onComplete(true, rows.deletePositions(idsCopy));
+                }
+            }
+        }.schedule();
+    }
+
+}
@@ -0,0 +1,112 @@
+
+package org.traccar.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// requests either never reach the server, reach it and lose the response, or succeed after a random latency
+public class FaultyTransport implements Transport {
+
+    private final Random random;
+    private final Map<Long, Integer> received = new HashMap<>();
+
+    private Clock clock;
+    private int epoch;
+    private boolean online = true;
+    private boolean crashed;
+    private long acknowledged;
+    private long failures;
+
+    private double refuseRate;
+    private double lossRate;
+    private double crashRate;
+    private long maxLatency;
+
+    public FaultyTransport(Random random) {
+        this.random = random;
+    }
+
+    // responses to requests sent before the reset are not counted for the new pipeline
+    public void setClock(Clock clock) {
+        this.clock = clock;
+        epoch += 1;
+        crashed = false;
+        failures = 0;
+    }
+
+    public void setFaults(double refuseRate, double lossRate, double crashRate, long maxLatency) {
+        this.refuseRate = refuseRate;
+        this.lossRate = lossRate;
+        this.crashRate = crashRate;
+        this.maxLatency = maxLatency;
+    }
+
+    public void setOnline(boolean online) {
+        this.online = online;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    // process died after the server accepted a request
+    public boolean isCrashed() {
+        return crashed;
+    }
+
+    // server side, positions are keyed by fix time in seconds
+    public Map<Long, Integer> getReceived() {
+        return received;
+    }
+
+    // responses delivered to the pipeline that sent the request
+    public long getAcknowledged() {
+        return acknowledged;
+    }
+
+    // failed requests reported to the current process
+    public long getFailures() {
+        return failures;
+    }
+
+    private static long getTimestamp(String request) {
+        int start = request.indexOf("timestamp=") + "timestamp=".length();
+        int end = request.indexOf('&', start);
+        return Long.parseLong(end >= 0 ? request.substring(start, end) : request.substring(start));
+    }
+
+    private void complete(final Handler handler, final boolean success) {
+        final int sendEpoch = epoch;
+        clock.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (sendEpoch == epoch) {
+                    if (success) {
+                        acknowledged += 1;
+                    } else {
+                        failures += 1;
+                    }
+                }
+                handler.onComplete(success);
+            }
+        }, maxLatency > 0 ? (long) (random.nextDouble() * maxLatency) : 0);
+    }
+
+    @Override
+    public void send(String request, Handler handler) {
+        if (!online || random.nextDouble() < refuseRate) {
+            complete(handler, false);
+            return;
+        }
+        long timestamp = getTimestamp(request);
+        Integer count = received.get(timestamp);
+        received.put(timestamp, count != null ? count + 1 : 1);
+        if (random.nextDouble() < crashRate) {
+            crashed = true;
+        } else {
+            complete(handler, random.nextDouble() >= lossRate);
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+
+package org.traccar.client;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KalmanFilterTest {
+
+    private static List<double[]> readTrack(String name) throws Exception {
+        List<double[]> rows = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                KalmanFilterTest.class.getResourceAsStream("/" + name), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                String[] values = line.split(",");
+                double[] row = new double[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    row[i] = Double.parseDouble(values[i]);
+                }
+                rows.add(row);
+            }
+        } finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    private static Position createPosition(long time, double latitude, double longitude) {
+        Position position = new Position();
+        position.setTime(new Date(time));
+        position.setLatitude(latitude);
+        position.setLongitude(longitude);
+        position.setGsm(0);
+        return position;
+    }
+
+    private static LocationFilterChain createChain() {
+        return new LocationFilterChain()
+                .add(new LocationFilter.MinTime(300 * 1000))
+                .add(new LocationFilter.MinDistance(50));
+    }
+
+    @Test
+    public void testStationary() {
+        KalmanFilter filter = new KalmanFilter();
+        for (int i = 0; i < 100; i++) {
+            filter.process(i * 1000, 10 + (i % 2 == 0 ? 0.0001 : -0.0001), 20, 20);
+        }
+        assertEquals(10, filter.getLatitude(), 0.00005);
+        assertEquals(20, filter.getLongitude(), 0.00005);
+        assertTrue(filter.getSpeed() < 1);
+    }
+
+    @Test
+    public void testConstantVelocity() {
+        KalmanFilter filter = new KalmanFilter();
+        double metersPerDegree = 6378137.0 * Math.PI / 180;
+        for (int i = 0; i < 60; i++) {
+            filter.process(i * 1000, i * 10 / metersPerDegree, 0, 5);
+        }
+        assertEquals(10, filter.getSpeed(), 0.5);
+        assertEquals(0, filter.getBearing() > 180 ? filter.getBearing() - 360 : filter.getBearing(), 2);
+    }
+
+    @Test
+    public void testNoisyTrack() throws Exception {
+        List<double[]> track = readTrack("noisy_track.csv");
+
+        KalmanFilter filter = new KalmanFilter();
+        LocationFilterChain rawChain = createChain();
+        LocationFilterChain smoothChain = createChain();
+        double rawError = 0;
+        double smoothError = 0;
+        int rawStationary = 0;
+        int smoothStationary = 0;
+        double[] previous = null;
+
+        for (double[] row : track) {
+            long time = (long) row[0];
+            boolean stationary = previous != null && previous[4] == row[4] && previous[5] == row[5];
+            previous = row;
+            filter.process(time, row[1], row[2], row[3]);
+
+            rawError += Math.pow(DistanceCalculator.distance(row[1], row[2], row[4], row[5]), 2);
+            smoothError += Math.pow(DistanceCalculator.distance(
+                    filter.getLatitude(), filter.getLongitude(), row[4], row[5]), 2);
+
+            if (rawChain.accept(createPosition(time, row[1], row[2])) && stationary) {
+                rawStationary += 1;
+            }
+            if (smoothChain.accept(createPosition(time, filter.getLatitude(), filter.getLongitude())) && stationary) {
+                smoothStationary += 1;
+            }
+        }
+
+        rawError = Math.sqrt(rawError / track.size());
+        smoothError = Math.sqrt(smoothError / track.size());
+
+        assertTrue(smoothError < rawError * 0.8);
+        assertTrue(smoothChain.getAccepted() < rawChain.getAccepted());
+        assertTrue(smoothStationary < rawStationary / 2);
+    }
+
+}
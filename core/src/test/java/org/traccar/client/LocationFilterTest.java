@@ -0,0 +1,138 @@
+
+package org.traccar.client;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocationFilterTest {
+
+    private static Position createPosition(long time, double latitude, double longitude, double course, double accuracy) {
+        Position position = new Position();
+        position.setTime(new Date(time));
+        position.setLatitude(latitude);
+        position.setLongitude(longitude);
+        position.setCourse(course);
+        position.setAccuracy(accuracy);
+        position.setGsm(0);
+        return position;
+    }
+
+    static List<Position> readTrack(String name) throws Exception {
+        List<Position> positions = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                LocationFilterTest.class.getResourceAsStream("/" + name), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                String[] values = line.split(",");
+                Position position = createPosition(
+                        Long.parseLong(values[0]), Double.parseDouble(values[1]), Double.parseDouble(values[2]),
+                        Double.parseDouble(values[4]), Double.parseDouble(values[5]));
+                position.setSpeed(Double.parseDouble(values[3]) * 1.943844);
+                positions.add(position);
+            }
+        } finally {
+            reader.close();
+        }
+        return positions;
+    }
+
+    private static LocationFilterChain createChain() {
+        return new LocationFilterChain()
+                .add(new LocationFilter.Duplicate())
+                .add(new LocationFilter.Accuracy(50))
+                .add(new LocationFilter.Speed(100))
+                .add(new LocationFilter.MinTime(300 * 1000))
+                .add(new LocationFilter.MinDistance(100))
+                .add(new LocationFilter.Heading(30));
+    }
+
+    @Test
+    public void testMinDistanceUsesLastLongitude() {
+        LocationFilterChain chain = new LocationFilterChain().add(new LocationFilter.MinDistance(100));
+
+        assertTrue(chain.accept(createPosition(0, 0, 0, 0, 5)));
+        assertFalse(chain.accept(createPosition(1000, 0, 0.0005, 0, 5)));
+        assertTrue(chain.accept(createPosition(2000, 0, 0.002, 0, 5)));
+    }
+
+    @Test
+    public void testHeadingWrapsAround() {
+        LocationFilterChain chain = new LocationFilterChain().add(new LocationFilter.Heading(30));
+
+        assertTrue(chain.accept(createPosition(0, 0, 0, 350, 5)));
+        assertFalse(chain.accept(createPosition(1000, 0, 0, 10, 5)));
+        assertTrue(chain.accept(createPosition(2000, 0, 0, 45, 5)));
+    }
+
+    @Test
+    public void testRejectStages() {
+        LocationFilterChain chain = createChain();
+
+        assertTrue(chain.accept(createPosition(0, 0, 0, 0, 5)));
+        assertFalse(chain.accept(createPosition(0, 0, 0.01, 0, 5)));
+        assertFalse(chain.accept(createPosition(1000, 0, 0.01, 0, 500)));
+        assertFalse(chain.accept(createPosition(2000, 0.1, 0, 0, 5)));
+        assertTrue(chain.accept(createPosition(600 * 1000, 0, 0, 0, 5)));
+
+        assertEquals(2, chain.getAccepted());
+        assertEquals(3, chain.getRejected());
+        assertEquals(1, chain.getFilters().get(0).getRejected());
+        assertEquals(1, chain.getFilters().get(1).getRejected());
+        assertEquals(1, chain.getFilters().get(2).getRejected());
+        assertEquals(1, chain.getFilters().get(3).getAccepted());
+    }
+
+    @Test
+    public void testForce() {
+        LocationFilterChain chain = new LocationFilterChain().add(new LocationFilter.MinTime(1000));
+
+        chain.force(createPosition(0, 0, 0, 0, 5));
+        assertFalse(chain.accept(createPosition(500, 0, 0, 0, 5)));
+        assertTrue(chain.accept(createPosition(1000, 0, 0, 0, 5)));
+    }
+
+    @Test
+    public void testRecordedTrack() throws Exception {
+        List<Position> track = readTrack("track.csv");
+
+        LocationFilterChain chain = createChain();
+        for (Position position : track) {
+            chain.accept(position);
+        }
+
+        assertEquals(track.size(), chain.getAccepted() + chain.getRejected());
+        assertTrue(chain.getAccepted() > 10);
+        assertTrue(chain.getAccepted() < track.size() / 3);
+        assertEquals(3, chain.getFilters().get(0).getRejected());
+        assertTrue(chain.getFilters().get(2).getRejected() >= 3);
+    }
+
+    @Test
+    public void testSpeedRecoversFromBadReference() {
+        LocationFilterChain chain = new LocationFilterChain()
+                .add(new LocationFilter.Speed(100))
+                .add(new LocationFilter.MinTime(0));
+
+        assertTrue(chain.accept(createPosition(0, 1, 1, 0, 5)));
+        for (int i = 1; i <= LocationFilter.Speed.MAX_REJECTIONS; i++) {
+            assertFalse(chain.accept(createPosition(i * 1000, 0, 0, 0, 5)));
+        }
+        assertTrue(chain.accept(createPosition(10000, 0, 0.0001, 0, 5)));
+        assertTrue(chain.accept(createPosition(11000, 0, 0.0002, 0, 5)));
+        assertFalse(chain.accept(createPosition(12000, 1, 1, 0, 5)));
+    }
+
+}
@@ -0,0 +1,58 @@
+
+package org.traccar.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    @Test
+    public void testRegistry() {
+        Metrics.Counter counter = Metrics.counter("test.counter");
+        assertSame(counter, Metrics.counter("test.counter"));
+        counter.inc();
+        counter.add(2);
+        assertEquals(3, counter.get());
+        assertEquals("3", Metrics.snapshot().get("test.counter"));
+
+        Metrics.Gauge gauge = Metrics.gauge("test.gauge");
+        gauge.set(10);
+        gauge.set(4);
+        assertEquals(4, gauge.get());
+        assertEquals("4 (max 10)", Metrics.snapshot().get("test.gauge"));
+
+        Metrics.Label label = Metrics.label("test.label");
+        label.set("send 120 ms");
+        assertEquals("send 120 ms", Metrics.snapshot().get("test.label"));
+    }
+
+    @Test
+    public void testHistogram() throws Exception {
+        final Metrics.Histogram histogram = Metrics.histogram("test.histogram", Metrics.TIME_BUCKETS);
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        histogram.record(j < 900 ? 15 : 700);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(4000, histogram.getCount());
+        assertEquals(20, histogram.percentile(0.5));
+        assertEquals(1000, histogram.percentile(0.95));
+        assertTrue(Metrics.snapshot().get("test.histogram").startsWith("n 4000 avg 83 "));
+    }
+
+}
@@ -0,0 +1,47 @@
+
+package org.traccar.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PositionBufferTest {
+
+    @Test
+    public void testWrapAround() {
+        PositionBuffer buffer = new PositionBuffer(3);
+        Position[] positions = new Position[5];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new Position();
+        }
+
+        buffer.add(positions[0], 0);
+        buffer.add(positions[1], 1);
+        buffer.add(positions[2], 2);
+        assertTrue(buffer.isFull());
+        assertEquals(positions[0], buffer.poll());
+        assertEquals(positions[1], buffer.poll());
+
+        buffer.add(positions[3], 3);
+        buffer.add(positions[4], 4);
+        assertEquals(2, buffer.peekTime());
+        assertEquals(positions[2], buffer.poll());
+        assertEquals(positions[3], buffer.poll());
+        assertEquals(positions[4], buffer.poll());
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testWritesPerDelivery() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        metrics.onIngest(1, 0);
+        metrics.onUpload(0);
+        metrics.onDirectUpload(0);
+        metrics.onDirectUpload(0);
+        assertEquals(2.0 / 3, metrics.getWritesPerDelivery(), 0.001);
+    }
+
+}
@@ -0,0 +1,34 @@
+
+package org.traccar.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PositionTraceTest {
+
+    @Test
+    public void testFormat() {
+        PositionTrace trace = new PositionTrace();
+        trace.mark(PositionTrace.FIX, 1000);
+        trace.mark(PositionTrace.RECEIVE, 1850);
+        trace.mark(PositionTrace.ACCEPT, 1851);
+        trace.mark(PositionTrace.READ, 2000);
+        trace.mark(PositionTrace.SEND, 2001);
+        trace.mark(PositionTrace.ACK, 2300);
+
+        assertEquals(1850, trace.get(PositionTrace.RECEIVE));
+        assertEquals(0, trace.get(PositionTrace.WRITE));
+        assertEquals("fix:0,receive:850,accept:851,read:1000,send:1001,ack:1300", trace.format());
+    }
+
+    @Test
+    public void testRestored() {
+        PositionTrace trace = new PositionTrace();
+        trace.mark(PositionTrace.READ, 5000);
+        trace.mark(PositionTrace.SEND, 5010);
+
+        assertEquals("read:0,send:10", trace.format());
+    }
+
+}
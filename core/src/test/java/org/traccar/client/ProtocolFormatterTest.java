@@ -1,26 +1,25 @@
 
 package org.traccar.client;
 
-import android.location.Location;
-
 import org.junit.Test;
-import org.junit.runner.RunWith;
-import org.robolectric.RobolectricGradleTestRunner;
-import org.robolectric.annotation.Config;
 
 import java.util.Date;
 
 import static org.junit.Assert.assertEquals;
 
-@RunWith(RobolectricGradleTestRunner.class)
-@Config(constants = BuildConfig.class, sdk = 21)
 public class ProtocolFormatterTest {
 
+    private static Position createPosition() {
+        Position position = new Position();
+        position.setDeviceId("123456789012345");
+        position.setTime(new Date(0));
+        return position;
+    }
+
     @Test
     public void testFormatRequest() throws Exception {
 
-        Position position = new Position("123456789012345", new Location("gps"), 0);
-        position.setTime(new Date(0));
+        Position position = createPosition();
 
         String url = ProtocolFormatter.formatRequest("http://localhost:5055", position);
         assertEquals("http://localhost:5055?id=123456789012345&timestamp=0&lat=0.0&lon=0.0&speed=0.0&bearing=0.0&altitude=0.0&batt=0.0", url);
@@ -29,8 +28,7 @@ public class ProtocolFormatterTest {
     @Test
     public void testFormatPathPortRequest() throws Exception {
 
-        Position position = new Position("123456789012345", new Location("gps"), 0);
-        position.setTime(new Date(0));
+        Position position = createPosition();
 
         String url = ProtocolFormatter.formatRequest("http://localhost:8888/path", position);
         assertEquals("http://localhost:8888/path?id=123456789012345&timestamp=0&lat=0.0&lon=0.0&speed=0.0&bearing=0.0&altitude=0.0&batt=0.0", url);
@@ -39,10 +37,18 @@ public class ProtocolFormatterTest {
     @Test
     public void testFormatAlarmRequest() throws Exception {
 
-        Position position = new Position("123456789012345", new Location("gps"), 0);
-        position.setTime(new Date(0));
+        Position position = createPosition();
 
         String url = ProtocolFormatter.formatRequest("http://localhost:5055/path", position, "alert message");
         assertEquals("http://localhost:5055/path?id=123456789012345&timestamp=0&lat=0.0&lon=0.0&speed=0.0&bearing=0.0&altitude=0.0&batt=0.0&alarm=alert%20message", url);
     }
+
+    @Test
+    public void testFormatQueryRequest() throws Exception {
+
+        Position position = createPosition();
+
+        String url = ProtocolFormatter.formatRequest("http://localhost:5055/?key=a", position, "\u00e9&=");
+        assertEquals("http://localhost:5055/?key=a&id=123456789012345&timestamp=0&lat=0.0&lon=0.0&speed=0.0&bearing=0.0&altitude=0.0&batt=0.0&alarm=%C3%A9%26%3D", url);
+    }
 }
@@ -0,0 +1,48 @@
+package org.traccar.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProviderScoreTest {
+
+    @Test
+    public void testScore() {
+        ProviderScore gps = new ProviderScore("gps");
+        ProviderScore network = new ProviderScore("network");
+
+        gps.onFix(1000, 1000, 5);
+        network.onFix(1000, -1000, 30);
+
+        // a fix two seconds old may be off by the drift on top of its accuracy
+        assertEquals(5, gps.getScore(), 0.001);
+        assertEquals(50, network.getScore(), 0.001);
+
+        gps.onFix(2000, 2000, 15);
+        assertEquals(8, gps.getAccuracy(), 0.001);
+        assertEquals(8, gps.getScore(), 0.001);
+        assertTrue(gps.getScore() < network.getScore());
+    }
+
+    @Test
+    public void testAvailability() {
+        ProviderScore score = new ProviderScore("gps");
+        assertFalse(score.isAvailable(0, 1000));
+        assertEquals(0, score.getAvailability(0, 1000), 0.001);
+
+        score.onFix(1000, 1000, 5);
+        score.onFix(2000, 2000, 5);
+        assertTrue(score.isAvailable(3000, 1000));
+        assertFalse(score.isAvailable(3500, 1000));
+
+        assertEquals(1, score.getAvailability(2000, 1000), 0.001);
+        assertEquals(0.4, score.getAvailability(5000, 1000), 0.001);
+
+        score.onSuperseded();
+        assertEquals(2, score.getFixes());
+        assertEquals(1, score.getSuperseded());
+    }
+
+}
@@ -0,0 +1,57 @@
+
+package org.traccar.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TimeoutPolicyTest {
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram(10);
+        for (int i = 0; i < 10; i++) {
+            histogram.add(80);
+        }
+        assertEquals(100, histogram.percentile(0.95));
+
+        histogram.add(2500);
+        assertEquals(10, histogram.size());
+        assertEquals(3000, histogram.percentile(0.95));
+        assertEquals(100, histogram.percentile(0.5));
+    }
+
+    @Test
+    public void testTimeouts() {
+        TimeoutPolicy policy = new TimeoutPolicy();
+        policy.setBounds(2000, 30000);
+
+        policy.setNetworkType("MOBILE/LTE");
+        assertEquals(30000, policy.getReadTimeout());
+        for (int i = 0; i < 20; i++) {
+            policy.onConnect(150);
+            policy.onRead(250);
+        }
+        assertEquals(2000, policy.getConnectTimeout());
+        assertEquals(2000, policy.getReadTimeout());
+
+        policy.setNetworkType("MOBILE/EDGE");
+        for (int i = 0; i < 20; i++) {
+            policy.onConnect(1200);
+            policy.onRead(6000);
+        }
+        assertEquals(3000, policy.getConnectTimeout());
+        assertEquals(15000, policy.getReadTimeout());
+
+        for (int i = 0; i < 10; i++) {
+            policy.onReadTimeout(policy.getReadTimeout());
+        }
+        assertEquals(30000, policy.getReadTimeout());
+        assertEquals(10, policy.getReadTimeouts());
+        assertEquals(0, policy.getFailures());
+
+        policy.setNetworkType("MOBILE/LTE");
+        assertEquals(2000, policy.getReadTimeout());
+    }
+
+}
@@ -0,0 +1,83 @@
+
+package org.traccar.client;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TrackReaderTest {
+
+    private static List<Position> readAll(TrackReader reader) throws IOException {
+        List<Position> positions = new ArrayList<>();
+        Position position;
+        while ((position = reader.read()) != null) {
+            positions.add(position);
+        }
+        return positions;
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        TrackReader reader = new TrackReader(new InputStreamReader(
+                TrackReaderTest.class.getResourceAsStream("/track.csv"), "UTF-8"), TrackReader.FORMAT_CSV);
+        List<Position> positions = readAll(reader);
+        assertEquals(LocationFilterTest.readTrack("track.csv").size(), positions.size());
+        assertEquals(1500000002000L, positions.get(0).getTime().getTime());
+        assertEquals(52.520022, positions.get(0).getLatitude(), 0.000001);
+        assertEquals(6.2, positions.get(0).getAccuracy(), 0.01);
+    }
+
+    @Test
+    public void testNmea() throws IOException {
+        String nmea = "$GPGGA,123519,4807.038,N,01131.000,E,1,08,0.9,545.4,M,46.9,M,,*47\n"
+                + "$GPRMC,123519,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*6A\n"
+                + "$GPRMC,123520,A,4807.038,N,01131.000,E,022.4,084.4,230394,003.1,W*00\n"
+                + "$GPRMC,123521,V,,,,,,,230394,,*00\n"
+                + "$GNRMC,123522.50,A,4807.100,S,01131.100,W,0.0,,230394,,,A\n";
+        TrackReader reader = new TrackReader(new StringReader(nmea), TrackReader.getFormat("drive.nmea"));
+        List<Position> positions = readAll(reader);
+
+        assertEquals(2, positions.size());
+        assertEquals(764426119000L, positions.get(0).getTime().getTime());
+        assertEquals(48.1173, positions.get(0).getLatitude(), 0.0001);
+        assertEquals(11.516667, positions.get(0).getLongitude(), 0.0001);
+        assertEquals(22.4, positions.get(0).getSpeed(), 0.01);
+        assertEquals(545.4, positions.get(0).getAltitude(), 0.01);
+        assertEquals(764426122500L, positions.get(1).getTime().getTime());
+        assertEquals(-48.118333, positions.get(1).getLatitude(), 0.0001);
+        assertEquals(0, positions.get(1).getAltitude(), 0.01);
+    }
+
+    @Test
+    public void testGpx() throws IOException {
+        String gpx = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<gpx version=\"1.1\" xmlns:gpxtpx=\"http://www.garmin.com/xmlschemas/TrackPointExtension/v2\">\n"
+                + "<!-- recorded on a bicycle -->\n"
+                + "<trk><name>Morning ride</name><trkseg>\n"
+                + "  <trkpt lat=\"52.5200\" lon=\"13.4050\"><ele>34.5</ele><time>2017-07-14T02:40:00Z</time></trkpt>\n"
+                + "  <trkpt lat='52.5210' lon='13.4060'><time>2017-07-14T04:40:05.5+02:00</time>\n"
+                + "    <extensions><gpxtpx:TrackPointExtension><gpxtpx:speed>5.0</gpxtpx:speed>"
+                + "<gpxtpx:course>45</gpxtpx:course></gpxtpx:TrackPointExtension></extensions></trkpt>\n"
+                + "  <trkpt lat=\"52.5220\" lon=\"13.4070\"><ele>35</ele></trkpt>\n"
+                + "</trkseg></trk></gpx>\n";
+        TrackReader reader = new TrackReader(new StringReader(gpx), TrackReader.getFormat("ride.GPX"));
+        List<Position> positions = readAll(reader);
+
+        assertEquals(2, positions.size());
+        assertEquals(1500000000000L, positions.get(0).getTime().getTime());
+        assertEquals(34.5, positions.get(0).getAltitude(), 0.01);
+        assertEquals(1500000005500L, positions.get(1).getTime().getTime());
+        assertEquals(52.521, positions.get(1).getLatitude(), 0.000001);
+        assertEquals(9.72, positions.get(1).getSpeed(), 0.01);
+        assertEquals(45, positions.get(1).getCourse(), 0.01);
+        assertNull(reader.read());
+    }
+
+}
@@ -0,0 +1,76 @@
+
+package org.traccar.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrackSimplifierTest {
+
+    private static final double STEP = 100 / 111320.0; // 100 meters in degrees at the equator
+
+    private static Position createPosition(long time, double latitude, double longitude, double speed, double course) {
+        Position position = new Position();
+        position.setTime(new Date(time * 1000));
+        position.setLatitude(latitude);
+        position.setLongitude(longitude);
+        position.setSpeed(speed);
+        position.setCourse(course);
+        position.setGsm(0);
+        return position;
+    }
+
+    @Test
+    public void testSimplify() {
+        List<Position> track = new ArrayList<>();
+        long time = 0;
+
+        // east, a cell position, a right angle turn to the north, a stop and a late fix after a gap
+        for (int i = 0; i <= 10; i++) {
+            track.add(createPosition(time, 0, i * STEP, 19.4, i < 10 ? 90 : 0));
+            time += 10;
+            if (i == 4) {
+                Position cell = createPosition(time - 5, 12345, 678, 0, 0);
+                cell.setGsm(1);
+                track.add(cell);
+            }
+        }
+        for (int i = 1; i <= 10; i++) {
+            track.add(createPosition(time, i * STEP, 10 * STEP, 19.4, 0));
+            time += 10;
+        }
+        for (int i = 0; i < 5; i++) {
+            track.add(createPosition(time, 10 * STEP, 10 * STEP, 0, 0));
+            time += 60;
+        }
+        track.add(createPosition(time + 3600, 10 * STEP, 10 * STEP, 0, 0));
+
+        boolean[] keep = new TrackSimplifier(10).simplify(track);
+
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < keep.length; i++) {
+            if (keep[i]) {
+                kept.add(i);
+            }
+        }
+        // start, cell, turn, arrival, stop, last fix before the gap and the end
+        assertEquals("[0, 5, 11, 21, 22, 26, 27]", kept.toString());
+    }
+
+    @Test
+    public void testTolerance() {
+        List<Position> track = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            double offset = i == 5 ? 50 / 111320.0 : 0;
+            track.add(createPosition(i * 10, offset, i * STEP, 19.4, 90));
+        }
+
+        assertEquals(true, new TrackSimplifier(10).simplify(track)[5]);
+        assertEquals(false, new TrackSimplifier(100).simplify(track)[5]);
+    }
+
+}
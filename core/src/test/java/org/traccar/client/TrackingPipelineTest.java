@@ -0,0 +1,241 @@
+
+package org.traccar.client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrackingPipelineTest {
+
+    private static class TestTransport implements Transport {
+
+        private final Clock clock;
+        private final List<String> requests = new ArrayList<>();
+        private boolean available = true;
+
+        public TestTransport(Clock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public void send(String request, final Handler handler) {
+            requests.add(request);
+            final boolean success = available;
+            clock.post(new Runnable() {
+                @Override
+                public void run() {
+                    handler.onComplete(success);
+                }
+            });
+        }
+
+    }
+
+    private static class TestDelegate implements TrackingPipeline.Delegate {
+
+        private int locks;
+
+        @Override
+        public TrackingPipeline.Lock acquireLock(String operation) {
+            locks += 1;
+            return new TrackingPipeline.Lock() {
+                @Override
+                public void release() {
+                    locks -= 1;
+                }
+            };
+        }
+
+        @Override
+        public boolean isWindowForced() {
+            return false;
+        }
+
+        @Override
+        public void prepare(Position position, TrackingPipeline.PrepareHandler handler) {
+            handler.onComplete(TrackingPipeline.Preparation.SEND);
+        }
+
+        @Override
+        public void onSendResult(boolean success) {
+        }
+
+        @Override
+        public void onDelivered(long id) {
+        }
+
+        @Override
+        public void onDeleted(long id) {
+        }
+
+        @Override
+        public void onStallStart(long time) {
+        }
+
+        @Override
+        public void onStallEnd() {
+        }
+
+        @Override
+        public void onDropped(int count) {
+        }
+
+        @Override
+        public void onStatus() {
+        }
+
+        @Override
+        public void log(String message) {
+        }
+
+    }
+
+    private static Position createPosition(long time) {
+        Position position = new Position();
+        position.setDeviceId("123456789012345");
+        position.setTime(new Date(time));
+        position.setGsm(0);
+        return position;
+    }
+
+    @Test
+    public void testUploadAndRetry() {
+        VirtualClock clock = new VirtualClock(1000000);
+        MemoryPositionStore store = new MemoryPositionStore(clock);
+        TestTransport transport = new TestTransport(clock);
+        TestDelegate delegate = new TestDelegate();
+
+        TrackingPipeline pipeline = new TrackingPipeline(clock, store, transport, delegate);
+        pipeline.setUrl("http://localhost:5055");
+        pipeline.setDeviceId("123456789012345");
+        pipeline.setOnline(true);
+        pipeline.start();
+
+        transport.available = false;
+        pipeline.onPositionUpdate(createPosition(clock.currentTime()));
+        pipeline.onPositionUpdate(createPosition(clock.currentTime()));
+        clock.advance(1000);
+
+        assertEquals(1, transport.requests.size());
+        assertEquals(2, store.countPositions());
+        assertTrue(pipeline.getMetrics().getStallTime(clock.currentTime()) > 0);
+
+        transport.available = true;
+        clock.advance(TrackingPipeline.RETRY_DELAY);
+
+        assertEquals(3, transport.requests.size());
+        assertTrue(store.getPositions().isEmpty());
+        assertEquals(0, pipeline.getMetrics().getQueueDepth());
+        assertEquals(0, delegate.locks);
+
+        pipeline.setOnline(false);
+        pipeline.onPositionUpdate(createPosition(clock.currentTime()));
+        clock.advance(1000);
+
+        assertEquals(3, transport.requests.size());
+        assertTrue(pipeline.stop().isEmpty());
+        assertEquals(1, store.countPositions());
+    }
+
+    @Test
+    public void testLateDirectDelivery() {
+        VirtualClock clock = new VirtualClock(1000000);
+        MemoryPositionStore store = new MemoryPositionStore(clock);
+        TestTransport transport = new TestTransport(clock);
+        TestDelegate delegate = new TestDelegate();
+
+        TrackingPipeline pipeline = new TrackingPipeline(clock, store, transport, delegate);
+        pipeline.setUrl("http://localhost:5055");
+        pipeline.setDeviceId("123456789012345");
+        pipeline.setBuffer(true, 60 * 1000);
+        pipeline.setOnline(true);
+        pipeline.start();
+
+        pipeline.onPositionUpdate(createPosition(clock.currentTime()));
+        while (transport.requests.isEmpty()) {
+            assertTrue(clock.runNext(clock.currentTime()));
+        }
+
+        // the service stops while the server has not answered yet, the position is stored anyway
+        List<Position> unsaved = pipeline.stop();
+        assertEquals(1, unsaved.size());
+        store.insertPositions(unsaved);
+
+        clock.advance(1000);
+
+        assertEquals(1, transport.requests.size());
+        assertEquals(0, store.countPositions());
+        assertEquals(0, delegate.locks);
+    }
+
+    @Test
+    public void testCompaction() {
+        VirtualClock clock = new VirtualClock(1000000);
+        MemoryPositionStore store = new MemoryPositionStore(clock);
+        TestTransport transport = new TestTransport(clock);
+        TestDelegate delegate = new TestDelegate();
+
+        TrackingPipeline pipeline = new TrackingPipeline(clock, store, transport, delegate);
+        pipeline.setUrl("http://localhost:5055");
+        pipeline.setDeviceId("123456789012345");
+        pipeline.setCompaction(true, 20, 10);
+        pipeline.start();
+
+        for (int i = 0; i < 30; i++) {
+            pipeline.onPositionUpdate(createPosition(clock.currentTime()));
+            clock.advance(1000);
+        }
+
+        // the first 20 rows collapse to their ends, the next job waits for another 20 rows
+        assertEquals(18, pipeline.getMetrics().getCompacted());
+        assertEquals(12, store.countPositions());
+        assertEquals(12, pipeline.getMetrics().getQueueDepth());
+        assertEquals(0, delegate.locks);
+
+        pipeline.setOnline(true);
+        clock.advance(1000);
+
+        assertEquals(12, transport.requests.size());
+        assertTrue(store.getPositions().isEmpty());
+    }
+
+    @Test
+    public void testCompactionSkipsRowsBeingRead() {
+        VirtualClock clock = new VirtualClock(1000000);
+        FaultyPositionStore store = new FaultyPositionStore(new Random());
+        store.setClock(clock);
+        TestTransport transport = new TestTransport(clock);
+        TestDelegate delegate = new TestDelegate();
+
+        List<Position> positions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            positions.add(createPosition(clock.currentTime() + i * 1000));
+        }
+        store.getRows().insertPositions(positions);
+
+        TrackingPipeline pipeline = new TrackingPipeline(clock, store, transport, delegate);
+        pipeline.setUrl("http://localhost:5055");
+        pipeline.setDeviceId("123456789012345");
+        pipeline.setCompaction(true, 20, 10);
+        pipeline.restoreDelivered(Collections.singletonList(positions.get(0).getId()));
+        pipeline.start();
+        pipeline.setOnline(true);
+
+        // the worker selects the second row before the compaction delete runs
+        clock.advance(1000);
+
+        assertEquals(18, pipeline.getMetrics().getCompacted());
+        assertEquals(1, transport.requests.size());
+        assertEquals(1, store.getRows().countPositions());
+        assertEquals(positions.get(0).getId(), store.getRows().getPositions().get(0).getId());
+        assertEquals(0, delegate.locks);
+    }
+
+}
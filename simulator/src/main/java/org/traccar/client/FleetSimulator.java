@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// runs thousands of virtual clients on one virtual clock, requests go over loopback to a stand-in server
+public final class FleetSimulator {
+
+    private static final long SAMPLE_INTERVAL = 60 * 1000;
+    private static final long RECONNECT_SPREAD = 60 * 1000;
+
+    private FleetSimulator() {
+    }
+
+    // any format the replay provider accepts, the simulator keeps the whole track in memory
+    private static List<Position> readTrack(String path) throws IOException {
+        List<Position> track = new ArrayList<>();
+        try (TrackReader reader = new TrackReader(new InputStreamReader(
+                new FileInputStream(path), StandardCharsets.UTF_8), TrackReader.getFormat(path))) {
+            Position position;
+            while ((position = reader.read()) != null) {
+                track.add(position);
+            }
+        }
+        if (track.isEmpty()) {
+            throw new IOException("Empty track " + path);
+        }
+        return track;
+    }
+
+    private static void scheduleReconnect(VirtualClock clock, SimulationConfig config,
+                                          final List<SimulatedDevice> devices, Random random) {
+        clock.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                for (SimulatedDevice device : devices) {
+                    device.setOnline(false);
+                }
+            }
+        }, config.getOutageStart());
+        // devices regain connectivity within a minute of each other, like a cell coming back
+        for (final SimulatedDevice device : devices) {
+            clock.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    device.setOnline(true);
+                }
+            }, config.getOutageStart() + config.getOutageLength() + (long) (random.nextDouble() * RECONNECT_SPREAD));
+        }
+    }
+
+    private static void scheduleOutage(VirtualClock clock, SimulationConfig config, final StandInServer server) {
+        clock.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                server.setAvailable(false);
+            }
+        }, config.getOutageStart());
+        clock.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                server.setAvailable(true);
+            }
+        }, config.getOutageStart() + config.getOutageLength());
+    }
+
+    public static void main(String[] args) throws IOException {
+        SimulationConfig config = new SimulationConfig(args);
+        Random random = new Random(config.getSeed());
+        List<Position> replay = config.getTrack() != null ? readTrack(config.getTrack()) : null;
+
+        final VirtualClock clock = new VirtualClock(System.currentTimeMillis());
+        final LoadRecorder recorder = new LoadRecorder(clock.currentTime());
+        StandInServer server = new StandInServer(recorder);
+        server.start();
+        Transport transport = new HttpTransport(clock, config.getLatency());
+
+        final List<SimulatedDevice> devices = new ArrayList<>();
+        for (int i = 0; i < config.getDevices(); i++) {
+            SimulatedDevice device = new SimulatedDevice(
+                    clock, transport, config, server.getUrl(), String.format("%015d", i), replay, random);
+            devices.add(device);
+            device.start();
+        }
+
+        if (config.getScenario().equals(SimulationConfig.SCENARIO_RECONNECT)) {
+            scheduleReconnect(clock, config, devices, random);
+        } else if (config.getScenario().equals(SimulationConfig.SCENARIO_OUTAGE)) {
+            scheduleOutage(clock, config, server);
+        } else if (!config.getScenario().equals(SimulationConfig.SCENARIO_STEADY)) {
+            throw new IllegalArgumentException("Unknown scenario " + config.getScenario());
+        }
+
+        clock.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                long backlog = 0;
+                for (SimulatedDevice device : devices) {
+                    backlog += device.getBacklog();
+                }
+                recorder.recordBacklog(clock.currentTime(), backlog);
+                clock.postDelayed(this, SAMPLE_INTERVAL);
+            }
+        }, SAMPLE_INTERVAL - 1);
+
+        long realTime = System.currentTimeMillis();
+        clock.advance(config.getDuration());
+        for (SimulatedDevice device : devices) {
+            device.stop();
+        }
+        server.stop();
+
+        recorder.print(System.out, config);
+        System.out.println("real time " + (System.currentTimeMillis() - realTime) / 1000 + " s");
+        if (config.getReport() != null) {
+            try (PrintStream out = new PrintStream(config.getReport(), "UTF-8")) {
+                recorder.writeCsv(out);
+            }
+        }
+    }
+
+}
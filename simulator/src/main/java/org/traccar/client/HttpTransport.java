@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+// blocking request to the stand-in server, completion is delivered on the virtual clock after the link latency
+public class HttpTransport implements Transport {
+
+    private final VirtualClock clock;
+    private final long latency;
+
+    public HttpTransport(VirtualClock clock, long latency) {
+        this.clock = clock;
+        this.latency = latency;
+    }
+
+    @Override
+    public void send(String request, final Handler handler) {
+        boolean success = false;
+        long startTime = System.nanoTime();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(request).openConnection();
+            connection.setRequestProperty(StandInServer.TIME_HEADER, String.valueOf(clock.currentTime()));
+            success = connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+            InputStream stream = success ? connection.getInputStream() : connection.getErrorStream();
+            if (stream != null) {
+                stream.close();
+            }
+        } catch (IOException e) {
+            success = false;
+        }
+        final boolean result = success;
+        long elapsed = (System.nanoTime() - startTime) / 1000000;
+        clock.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                handler.onComplete(result);
+            }
+        }, latency + elapsed);
+    }
+
+}
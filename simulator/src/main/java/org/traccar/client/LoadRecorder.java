@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// server side view of a simulation, keyed by virtual time
+public class LoadRecorder {
+
+    private static final int REQUESTS = 0;
+    private static final int ERRORS = 1;
+    private static final int BYTES = 2;
+
+    private static final long[] HANDLING_BUCKETS = {
+            10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 50000 };
+
+    private final TreeMap<Long, long[]> seconds = new TreeMap<>();
+    private final TreeMap<Long, Long> backlog = new TreeMap<>();
+    private final TreeMap<Long, Long> maxAge = new TreeMap<>();
+    private final Set<String> delivered = new HashSet<>();
+    private long duplicates;
+
+    private final long startTime;
+
+    public LoadRecorder(long startTime) {
+        this.startTime = startTime;
+    }
+
+    private final Metrics.Histogram handling = Metrics.histogram("server.handling.us", HANDLING_BUCKETS);
+    private final Metrics.Histogram freshness = Metrics.histogram("server.freshness", Metrics.TIME_BUCKETS);
+
+    public synchronized void record(long time, long bytes, String deviceId, long fixTime, boolean success,
+                                    long handlingNanos) {
+        long second = (time - startTime) / 1000;
+        long[] bucket = seconds.get(second);
+        if (bucket == null) {
+            bucket = new long[3];
+            seconds.put(second, bucket);
+        }
+        bucket[REQUESTS] += 1;
+        bucket[BYTES] += bytes;
+        handling.record(handlingNanos / 1000);
+        if (!success) {
+            bucket[ERRORS] += 1;
+            return;
+        }
+        if (!delivered.add(deviceId + ':' + fixTime)) {
+            duplicates += 1;
+        }
+        long age = Math.max(time - fixTime, 0);
+        freshness.record(age);
+        Long minuteAge = maxAge.get(second / 60);
+        if (minuteAge == null || age > minuteAge) {
+            maxAge.put(second / 60, age);
+        }
+    }
+
+    public synchronized void recordBacklog(long time, long positions) {
+        backlog.put((time - startTime) / 60000, positions);
+    }
+
+    public synchronized void print(PrintStream out, SimulationConfig config) {
+        out.println("simulation: " + config);
+        out.println(String.format(Locale.US, "%6s %10s %9s %8s %10s %10s %10s",
+                "minute", "requests", "peak/s", "errors", "kB", "max age s", "backlog"));
+
+        long minutes = (config.getDuration() + 59999) / 60000;
+        long total = 0, errors = 0, bytes = 0, peak = 0, peakSecond = 0;
+        for (long minute = 0; minute < minutes; minute++) {
+            long requests = 0, minuteErrors = 0, minuteBytes = 0, minutePeak = 0;
+            for (Map.Entry<Long, long[]> entry : seconds.subMap(minute * 60, (minute + 1) * 60).entrySet()) {
+                long[] bucket = entry.getValue();
+                requests += bucket[REQUESTS];
+                minuteErrors += bucket[ERRORS];
+                minuteBytes += bucket[BYTES];
+                minutePeak = Math.max(minutePeak, bucket[REQUESTS]);
+                if (bucket[REQUESTS] > peak) {
+                    peak = bucket[REQUESTS];
+                    peakSecond = entry.getKey();
+                }
+            }
+            total += requests;
+            errors += minuteErrors;
+            bytes += minuteBytes;
+            Long age = maxAge.get(minute);
+            Long queued = backlog.get(minute);
+            out.println(String.format(Locale.US, "%6d %10d %9d %8d %10d %10d %10d",
+                    minute, requests, minutePeak, minuteErrors, minuteBytes / 1024,
+                    age != null ? age / 1000 : 0, queued != null ? queued : 0));
+        }
+
+        double hours = config.getDuration() / 3600000.0;
+        out.println(String.format(Locale.US,
+                "requests %d (%.1f/s mean, %d/s peak at %d s), errors %d, duplicates %d, %.1f MB/h",
+                total, total / (config.getDuration() / 1000.0), peak, peakSecond, errors, duplicates,
+                bytes / hours / (1024 * 1024)));
+        out.println("server handling us " + handling.format());
+        out.println("fix to arrival ms " + freshness.format());
+    }
+
+    public synchronized void writeCsv(PrintStream out) {
+        out.println("second,requests,errors,bytes");
+        for (Map.Entry<Long, long[]> entry : seconds.entrySet()) {
+            long[] bucket = entry.getValue();
+            out.println(entry.getKey() + "," + bucket[REQUESTS] + ","
+                    + bucket[ERRORS] + "," + bucket[BYTES]);
+        }
+    }
+
+}
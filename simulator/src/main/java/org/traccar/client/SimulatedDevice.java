@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.List;
+import java.util.Random;
+
+// one virtual client, the real upload pipeline over an in-memory store
+public class SimulatedDevice implements TrackingPipeline.Delegate, LocationSource.Listener {
+
+    private static final TrackingPipeline.Lock NO_LOCK = new TrackingPipeline.Lock() {
+        @Override
+        public void release() {
+        }
+    };
+
+    private final MemoryPositionStore store;
+    private final TrackingPipeline pipeline;
+    private final SimulatedTrack track;
+
+    public SimulatedDevice(VirtualClock clock, Transport transport, SimulationConfig config, String url,
+                           String deviceId, List<Position> replay, Random random) {
+        store = new MemoryPositionStore(clock);
+        pipeline = new TrackingPipeline(clock, store, transport, this);
+        pipeline.setUrl(url);
+        pipeline.setDeviceId(deviceId);
+        pipeline.setBuffer(config.getBuffer(), config.getBufferAge());
+        pipeline.setSync(config.getSync(), config.getSyncInterval(), config.getSyncBacklog());
+        track = new SimulatedTrack(clock, deviceId, config.getInterval(), replay, random, this);
+    }
+
+    public void start() {
+        pipeline.setOnline(true);
+        pipeline.start();
+        track.startUpdates();
+    }
+
+    public void stop() {
+        track.stopUpdates();
+        pipeline.stop();
+    }
+
+    public void setOnline(boolean online) {
+        pipeline.setOnline(online);
+    }
+
+    public long getBacklog() {
+        return store.countPositions();
+    }
+
+    @Override
+    public void onPositionUpdate(Position position) {
+        pipeline.onPositionUpdate(position);
+    }
+
+    @Override
+    public TrackingPipeline.Lock acquireLock(String operation) {
+        return NO_LOCK;
+    }
+
+    @Override
+    public boolean isWindowForced() {
+        return false;
+    }
+
+    @Override
+    public void prepare(Position position, TrackingPipeline.PrepareHandler handler) {
+        handler.onComplete(TrackingPipeline.Preparation.SEND);
+    }
+
+    @Override
+    public void onSendResult(boolean success) {
+    }
+
+    @Override
+    public void onDelivered(long id) {
+    }
+
+    @Override
+    public void onDeleted(long id) {
+    }
+
+    @Override
+    public void onStallStart(long time) {
+    }
+
+    @Override
+    public void onStallEnd() {
+    }
+
+    @Override
+    public void onDropped(int count) {
+    }
+
+    @Override
+    public void onStatus() {
+    }
+
+    @Override
+    public void log(String message) {
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+// produces a fix every interval, either replaying a recorded track or walking randomly
+public class SimulatedTrack implements LocationSource {
+
+    private static final double STEP = 0.0005; // degrees
+
+    private final VirtualClock clock;
+    private final String deviceId;
+    private final long interval;
+    private final List<Position> replay;
+    private final Random random;
+    private final Listener listener;
+
+    private int index;
+    private double latitude;
+    private double longitude;
+
+    public SimulatedTrack(VirtualClock clock, String deviceId, long interval, List<Position> replay,
+                          Random random, Listener listener) {
+        this.clock = clock;
+        this.deviceId = deviceId;
+        this.interval = interval;
+        this.replay = replay;
+        this.random = random;
+        this.listener = listener;
+        latitude = -60 + random.nextDouble() * 120;
+        longitude = -180 + random.nextDouble() * 360;
+        if (replay != null) {
+            index = random.nextInt(replay.size());
+        }
+    }
+
+    private final Runnable fixTask = new Runnable() {
+        @Override
+        public void run() {
+            listener.onPositionUpdate(next());
+            clock.postDelayed(this, interval);
+        }
+    };
+
+    private Position next() {
+        Position position = new Position();
+        position.setDeviceId(deviceId);
+        position.setTime(new Date(clock.currentTime()));
+        position.setGsm(0);
+        if (replay != null) {
+            Position recorded = replay.get(index++ % replay.size());
+            position.setLatitude(recorded.getLatitude());
+            position.setLongitude(recorded.getLongitude());
+            position.setSpeed(recorded.getSpeed());
+            position.setCourse(recorded.getCourse());
+        } else {
+            latitude += random.nextGaussian() * STEP;
+            longitude += random.nextGaussian() * STEP;
+            position.setLatitude(latitude);
+            position.setLongitude(longitude);
+            position.setSpeed(Math.abs(random.nextGaussian()) * 20);
+            position.setCourse(random.nextDouble() * 360);
+        }
+        position.setBattery(50 + random.nextInt(50));
+        return position;
+    }
+
+    // devices start at a random point of the first interval, so fixes are not aligned
+    @Override
+    public void startUpdates() {
+        clock.postDelayed(fixTask, (long) (random.nextDouble() * interval));
+    }
+
+    @Override
+    public void stopUpdates() {
+        clock.removeCallbacks(fixTask);
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SimulationConfig {
+
+    public static final String SCENARIO_STEADY = "steady";
+    public static final String SCENARIO_RECONNECT = "reconnect";
+    public static final String SCENARIO_OUTAGE = "outage";
+
+    private final Map<String, String> values = new HashMap<>();
+
+    // arguments are key=value pairs, for example devices=10000 scenario=reconnect
+    public SimulationConfig(String[] args) {
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            values.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+    }
+
+    private String getString(String key, String defaultValue) {
+        String value = values.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    private long getLong(String key, long defaultValue) {
+        String value = values.get(key);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    private boolean getBoolean(String key, boolean defaultValue) {
+        String value = values.get(key);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    public int getDevices() { return (int) getLong("devices", 1000); }
+    public long getDuration() { return getLong("duration", 3600) * 1000; }
+    public long getInterval() { return getLong("interval", 30) * 1000; }
+    public String getScenario() { return getString("scenario", SCENARIO_STEADY); }
+    public long getOutageStart() { return getLong("outageStart", 600) * 1000; }
+    public long getOutageLength() { return getLong("outageLength", 600) * 1000; }
+    public long getLatency() { return getLong("latency", 100); }
+    public boolean getBuffer() { return getBoolean("buffer", false); }
+    public long getBufferAge() { return getLong("bufferAge", 60) * 1000; }
+    public boolean getSync() { return getBoolean("sync", false); }
+    public long getSyncInterval() { return getLong("syncInterval", 900) * 1000; }
+    public long getSyncBacklog() { return getLong("syncBacklog", 50); }
+    public String getTrack() { return getString("track", null); }
+    public long getSeed() { return getLong("seed", 1); }
+    public String getReport() { return getString("report", null); }
+
+    @Override
+    public String toString() {
+        return getDevices() + " devices, " + getDuration() / 1000 + " s, interval " + getInterval() / 1000
+                + " s, scenario " + getScenario() + ", buffer " + getBuffer() + ", sync " + getSync();
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+
+// minimal OsmAnd protocol endpoint that records load instead of storing positions
+public class StandInServer implements HttpHandler {
+
+    public static final String TIME_HEADER = "X-Simulation-Time";
+
+    private final LoadRecorder recorder;
+    private HttpServer server;
+    private volatile boolean available = true;
+
+    public StandInServer(LoadRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+        server.createContext("/", this);
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    private static String getParameter(String query, String name) {
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith(name + "=")) {
+                    return parameter.substring(name.length() + 1);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        long startTime = System.nanoTime();
+        boolean success = available;
+        try {
+            exchange.sendResponseHeaders(success ? 200 : 503, -1);
+        } finally {
+            exchange.close();
+        }
+
+        // request line and headers approximate the bytes on the wire
+        long bytes = exchange.getRequestMethod().length() + exchange.getRequestURI().toString().length() + 11;
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            for (String value : header.getValue()) {
+                bytes += header.getKey().length() + value.length() + 4;
+            }
+        }
+
+        String query = exchange.getRequestURI().getRawQuery();
+        String timestamp = getParameter(query, "timestamp");
+        String time = exchange.getRequestHeaders().getFirst(TIME_HEADER);
+        recorder.record(
+                time != null ? Long.parseLong(time) : System.currentTimeMillis(), bytes,
+                getParameter(query, "id"), timestamp != null ? Long.parseLong(timestamp) * 1000 : 0,
+                success, System.nanoTime() - startTime);
+    }
+
+}